@@ -0,0 +1,91 @@
+package de.thohee.useless.chess.board;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Move generation and make/unmake of moves on the positions of the games.
+ * Every invocation takes the next position.
+ *
+ * @author Thomas
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+	private BoardPosition[] positions;
+	private MoveList[] moves;
+	private int index = 0;
+
+	@Setup
+	public void setup() throws Exception {
+		List<BoardPosition> loaded = Positions.load();
+		positions = new BoardPosition[loaded.size()];
+		moves = new MoveList[loaded.size()];
+		for (int i = 0; i < positions.length; ++i) {
+			positions[i] = loaded.get(i).createSearchPosition();
+			moves[i] = positions[i].getPossiblePackedMoves();
+		}
+	}
+
+	private int next() {
+		index = index + 1 < positions.length ? index + 1 : 0;
+		return index;
+	}
+
+	/**
+	 * Analyzes a position, which has not been analyzed before, i.e. the position
+	 * after the first move of the next position.
+	 */
+	@Benchmark
+	public int generateMoves() {
+		final int i = next();
+		BoardPosition position = positions[i];
+		position.makeMove(moves[i].get(0));
+		final int n = position.getPossiblePackedMoves().size();
+		position.unmakeMove();
+		return n;
+	}
+
+	/**
+	 * Performs and takes back all moves of the next position.
+	 */
+	@Benchmark
+	public void makeAndUnmakeMoves(Blackhole blackhole) {
+		final int i = next();
+		BoardPosition position = positions[i];
+		for (int m = 0; m < moves[i].size(); ++m) {
+			position.makeMove(moves[i].get(m));
+			blackhole.consume(position.getZobristHash());
+			position.unmakeMove();
+		}
+	}
+
+	@Benchmark
+	public int hashCodeOfPosition() {
+		return positions[next()].hashCode();
+	}
+
+	@Benchmark
+	public long perft() {
+		return new Perft().perft(Perft.ReferencePosition.Kiwipete.createPosition(), 3);
+	}
+
+}
@@ -0,0 +1,46 @@
+package de.thohee.useless.chess.board;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Provides the positions of the games in <code>src/test/resources/games</code>
+ * (or the directory given by the system property <code>games</code>) as
+ * realistic input for the benchmarks.
+ *
+ * @author Thomas
+ *
+ */
+public class Positions {
+
+	private Positions() {
+	}
+
+	/**
+	 * @return every position of every game, which is neither checkmate nor drawn
+	 */
+	public static List<BoardPosition> load() throws Exception {
+		File directory = new File(System.getProperty("games", "src/test/resources/games"));
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(".pgn"));
+		if (files == null || files.length == 0) {
+			throw new IllegalStateException("no games found in " + directory.getAbsolutePath());
+		}
+		Arrays.sort(files);
+		List<BoardPosition> positions = new ArrayList<>();
+		for (File file : files) {
+			for (GameReport gameReport : PGNParser.parse(file.getPath())) {
+				BoardPosition boardPosition = gameReport.getInitialPosition();
+				for (Move move : gameReport.getMoves()) {
+					if (!boardPosition.getPossiblePackedMoves().isEmpty()) {
+						positions.add(boardPosition);
+					}
+					boardPosition = boardPosition.performMove(move);
+				}
+			}
+		}
+		return positions;
+	}
+
+}
@@ -0,0 +1,103 @@
+package de.thohee.useless.chess.player;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.thohee.useless.chess.board.BoardPosition;
+import de.thohee.useless.chess.board.Colour;
+import de.thohee.useless.chess.board.Move;
+import de.thohee.useless.chess.board.PackedMove;
+import de.thohee.useless.chess.board.Positions;
+import de.thohee.useless.chess.player.Player.Params;
+import de.thohee.useless.chess.player.TranspositionTable.Bound;
+import de.thohee.useless.chess.player.TranspositionTable.Probe;
+
+/**
+ * Evaluation, transposition table and search of {@link ReadyPlayer1} on the
+ * positions of the games. Every invocation takes the next position.
+ *
+ * @author Thomas
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PlayerBenchmark {
+
+	private static final int SEARCH_DEPTH = 3;
+
+	private BoardPosition[] positions;
+	private long[] keys;
+	private Value[] values;
+	private ReadyPlayer1[] players;
+	private TranspositionTable transpositionTable;
+	private final Probe probe = new Probe();
+	private int index = 0;
+
+	@Setup
+	public void setup() throws Exception {
+		List<BoardPosition> loaded = Positions.load();
+		positions = loaded.toArray(new BoardPosition[loaded.size()]);
+		players = new ReadyPlayer1[2];
+		for (Colour colour : Colour.values()) {
+			players[colour.ordinal()] = new ReadyPlayer1(colour, true);
+			players[colour.ordinal()].noOpenings();
+		}
+		keys = new long[positions.length];
+		values = new Value[positions.length];
+		for (int i = 0; i < positions.length; ++i) {
+			keys[i] = positions[i].getKey();
+			values[i] = players[0].evaluate(positions[i]);
+		}
+		transpositionTable = new TranspositionTable();
+	}
+
+	private int next() {
+		index = index + 1 < positions.length ? index + 1 : 0;
+		return index;
+	}
+
+	private ReadyPlayer1 getPlayer(BoardPosition position) {
+		return players[position.getColourToMove().ordinal()];
+	}
+
+	/**
+	 * The positions are analyzed in the setup already, so this measures the
+	 * evaluation only.
+	 */
+	@Benchmark
+	public Value evaluate() {
+		BoardPosition position = positions[next()];
+		return getPlayer(position).evaluate(position);
+	}
+
+	@Benchmark
+	public Value transpositionTable() {
+		final int i = next();
+		transpositionTable.put(keys[i], SEARCH_DEPTH, Bound.Exact, values[i], PackedMove.NONE);
+		return transpositionTable.find(keys[(i * 7) % keys.length], probe) ? probe.getValue() : null;
+	}
+
+	@Benchmark
+	public Move search() {
+		BoardPosition position = positions[next()];
+		Params params = new Params();
+		params.maxDepthInPlies = SEARCH_DEPTH;
+		return getPlayer(position).makeMove(position, params);
+	}
+
+}
@@ -14,7 +14,9 @@ import java.util.concurrent.TimeUnit;
 import de.thohee.useless.chess.board.BoardPosition;
 import de.thohee.useless.chess.board.Colour;
 import de.thohee.useless.chess.board.FENParser;
+import de.thohee.useless.chess.board.MagicBitboards;
 import de.thohee.useless.chess.board.Move;
+import de.thohee.useless.chess.player.MinimaxPlayer;
 import de.thohee.useless.chess.player.Player;
 import de.thohee.useless.chess.player.RandomPlayer;
 import de.thohee.useless.chess.player.ReadyPlayer1;
@@ -26,6 +28,7 @@ public class Game implements Player.OutputWriter {
 	private static final String _uciok = "uciok";
 	private static final String _info = "info string ";
 	private static final String _isready = "isready";
+	private static final String _ucinewgame = "ucinewgame";
 	private static final String _readyok = "readyok";
 	private static final String _position = "position";
 	private static final String _startpos = "startpos";
@@ -38,6 +41,10 @@ public class Game implements Player.OutputWriter {
 	private static final String _stop = "stop";
 	private static final String _bestmove = "bestmove ";
 	private static final String _quit = "quit";
+	private static final String _setoption = "setoption name ";
+	private static final String _value = " value ";
+	private static final String _threads = "Threads";
+	private static final int maxThreads = 64;
 
 	private static final String _send = "send: ";
 	private static final String _recv = "recv: ";
@@ -45,8 +52,12 @@ public class Game implements Player.OutputWriter {
 
 	private PlayerConfiguration playerConfiguration;
 	private Player player;
+	// the players are kept per colour during a game in order to keep their
+	// transposition tables
+	private Player[] players = new Player[2];
 	private BoardPosition boardPosition;
 	private ExecutorService executor = Executors.newSingleThreadExecutor();
+	private int threads = 1;
 
 	private InputStream inStream;
 	private PrintStream outStream;
@@ -179,8 +190,10 @@ public class Game implements Player.OutputWriter {
 			writeToLog(_recv + firstLine);
 		}
 		if (_uci.equals(firstLine)) {
+			writeToLog(_debg + "sliding attack tables initialized in " + MagicBitboards.getInitializationMillis() + "ms");
 			println("id name de.thohee.useless.chess");
 			println("id author thohee");
+			println("option name " + _threads + " type spin default 1 min 1 max " + maxThreads);
 			println(_uciok);
 			while (processCommand(scanner.nextLine()))
 				;
@@ -210,6 +223,38 @@ public class Game implements Player.OutputWriter {
 				println(_readyok);
 				return true;
 			}
+			if (inputLine != null && inputLine.startsWith(_setoption)) {
+				String nameAndValue = inputLine.substring(_setoption.length());
+				int v = nameAndValue.indexOf(_value);
+				if (v >= 0 && _threads.equals(nameAndValue.substring(0, v).trim())) {
+					String value = nameAndValue.substring(v + _value.length()).trim();
+					try {
+						int t = Integer.parseInt(value);
+						if (t < 1) {
+							throw new NumberFormatException();
+						}
+						threads = Math.min(maxThreads, t);
+						for (Player p : players) {
+							setThreads(p);
+						}
+					} catch (NumberFormatException e) {
+						println(_info + "Invalid value " + value + " of option " + _threads + ", keeping " + threads);
+					}
+				} else {
+					println(_info + "Unknown option " + nameAndValue);
+				}
+				return true;
+			}
+			if (_ucinewgame.equals(inputLine)) {
+				for (Player p : players) {
+					if (p instanceof MinimaxPlayer) {
+						// release the helper threads
+						((MinimaxPlayer) p).setThreads(1);
+					}
+				}
+				players = new Player[2];
+				return true;
+			}
 			if (inputLine != null && inputLine.startsWith(_position)) {
 				boardPosition = null;
 				String startPosAndMoves = inputLine.substring(_position.length()).trim();
@@ -234,12 +279,17 @@ public class Game implements Player.OutputWriter {
 							boardPosition = boardPosition.performUciMove(moveToken);
 						}
 					}
-					Constructor<? extends Player> constructor = playerConfiguration.playerClass
-							.getConstructor(playerConfiguration.constructorParameterTypes);
-					Object[] params = playerConfiguration.constructorParameters.clone();
-					params[0] = boardPosition.getColourToMove();
-					this.player = constructor.newInstance(params);
-					this.player.setOutputWriter(this);
+					final Colour colour = boardPosition.getColourToMove();
+					if (players[colour.ordinal()] == null) {
+						Constructor<? extends Player> constructor = playerConfiguration.playerClass
+								.getConstructor(playerConfiguration.constructorParameterTypes);
+						Object[] params = playerConfiguration.constructorParameters.clone();
+						params[0] = colour;
+						players[colour.ordinal()] = constructor.newInstance(params);
+						players[colour.ordinal()].setOutputWriter(this);
+						setThreads(players[colour.ordinal()]);
+					}
+					this.player = players[colour.ordinal()];
 					return true;
 				} else {
 					println(_info + "Cannot read position.");
@@ -288,6 +338,12 @@ public class Game implements Player.OutputWriter {
 		}
 	}
 
+	private void setThreads(Player player) {
+		if (player instanceof MinimaxPlayer) {
+			((MinimaxPlayer) player).setThreads(threads);
+		}
+	}
+
 	private void findBestMoveConcurrently(Player.Params params) {
 		player.stop();
 		executor.submit(new Runnable() {
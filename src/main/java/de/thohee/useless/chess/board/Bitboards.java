@@ -0,0 +1,239 @@
+package de.thohee.useless.chess.board;
+
+/**
+ * Helpers for 64 bit board representations. Bit i corresponds to the
+ * coordinate with ordinal i, i.e. to column i / 8 and row i % 8. Thus
+ * advancing one row is a shift by 1 and advancing one column is a shift by 8.
+ *
+ * @author Thomas
+ *
+ */
+public final class Bitboards {
+
+	public static final long EMPTY = 0L;
+
+	public static final long ROW_1 = 0x0101010101010101L;
+	public static final long ROW_8 = ROW_1 << 7;
+
+	public static final long COLUMN_A = 0xFFL;
+	public static final long COLUMN_H = COLUMN_A << 56;
+
+	private static final long[] knightAttacks = new long[64];
+	private static final long[] kingAttacks = new long[64];
+	private static final long[][] pawnAttacks = new long[2][64];
+
+	private static final int[][] rookDirections = { { -1, 0 }, { 1, 0 }, { 0, -1 }, { 0, 1 } };
+	private static final int[][] bishopDirections = { { -1, -1 }, { 1, -1 }, { -1, 1 }, { 1, 1 } };
+
+	private static final long[][] between = new long[64][64];
+	private static final long[][] line = new long[64][64];
+
+	static {
+		for (int square = 0; square < 64; ++square) {
+			int column = column(square);
+			int row = row(square);
+			for (int dc = -2; dc <= 2; ++dc) {
+				for (int dr = -2; dr <= 2; ++dr) {
+					if (Math.abs(dc * dr) == 2) {
+						knightAttacks[square] |= bit(column + dc, row + dr);
+					} else if (Math.max(Math.abs(dc), Math.abs(dr)) == 1) {
+						kingAttacks[square] |= bit(column + dc, row + dr);
+					}
+				}
+			}
+			pawnAttacks[Colour.White.ordinal()][square] = bit(column - 1, row + 1) | bit(column + 1, row + 1);
+			pawnAttacks[Colour.Black.ordinal()][square] = bit(column - 1, row - 1) | bit(column + 1, row - 1);
+		}
+		for (int a = 0; a < 64; ++a) {
+			for (int b = 0; b < 64; ++b) {
+				if (a == b) {
+					continue;
+				}
+				for (int[][] directions : new int[][][] { rookDirections, bishopDirections }) {
+					if (contains(slide(a, EMPTY, directions), b)) {
+						between[a][b] = slide(a, bit(b), directions) & slide(b, bit(a), directions);
+						line[a][b] = (slide(a, EMPTY, directions) & slide(b, EMPTY, directions)) | bit(a) | bit(b);
+					}
+				}
+			}
+		}
+	}
+
+	private Bitboards() {
+	}
+
+	public static int square(int column, int row) {
+		return column * 8 + row;
+	}
+
+	public static int column(int square) {
+		return square >>> 3;
+	}
+
+	public static int row(int square) {
+		return square & 7;
+	}
+
+	public static long bit(int square) {
+		return 1L << square;
+	}
+
+	public static long bit(Coordinate coordinate) {
+		return 1L << coordinate.ordinal();
+	}
+
+	/**
+	 * @return the bit of the given square or {@link #EMPTY} if it is off board
+	 */
+	public static long bit(int column, int row) {
+		if (0 <= column && column < 8 && 0 <= row && row < 8) {
+			return bit(square(column, row));
+		} else {
+			return EMPTY;
+		}
+	}
+
+	public static boolean contains(long bitboard, int square) {
+		return (bitboard & bit(square)) != 0L;
+	}
+
+	/**
+	 * @return the index of the lowest set square, to be used together with
+	 *         {@link #withoutFirst(long)} to iterate over all set squares
+	 */
+	public static int first(long bitboard) {
+		return Long.numberOfTrailingZeros(bitboard);
+	}
+
+	public static long withoutFirst(long bitboard) {
+		return bitboard & (bitboard - 1);
+	}
+
+	public static int count(long bitboard) {
+		return Long.bitCount(bitboard);
+	}
+
+	public static long knightAttacks(int square) {
+		return knightAttacks[square];
+	}
+
+	public static long kingAttacks(int square) {
+		return kingAttacks[square];
+	}
+
+	/**
+	 * @return the squares diagonally in front of a pawn of the given colour
+	 */
+	public static long pawnAttacks(Colour colour, int square) {
+		return pawnAttacks[colour.ordinal()][square];
+	}
+
+	/**
+	 * @return the squares diagonally in front of all the given pawns of the given
+	 *         colour
+	 */
+	public static long pawnAttacks(Colour colour, long pawns) {
+		if (colour == Colour.White) {
+			final long advancing = pawns & ~ROW_8;
+			return (advancing << 9) | (advancing >>> 7);
+		} else {
+			final long advancing = pawns & ~ROW_1;
+			return (advancing << 7) | (advancing >>> 9);
+		}
+	}
+
+	private static long slide(int square, long occupancy, int[][] directions) {
+		long attacks = EMPTY;
+		for (int[] d : directions) {
+			int column = column(square) + d[0];
+			int row = row(square) + d[1];
+			while (0 <= column && column < 8 && 0 <= row && row < 8) {
+				long target = bit(square(column, row));
+				attacks |= target;
+				if ((occupancy & target) != 0L) {
+					// either an own or an opponent's piece is blocking
+					break;
+				}
+				column += d[0];
+				row += d[1];
+			}
+		}
+		return attacks;
+	}
+
+	private static long edgelessRays(int square, int[][] directions) {
+		long rays = EMPTY;
+		for (int[] d : directions) {
+			int column = column(square) + d[0];
+			int row = row(square) + d[1];
+			// the last square in each direction can never block anything behind it
+			while (0 <= column + d[0] && column + d[0] < 8 && 0 <= row + d[1] && row + d[1] < 8) {
+				rays |= bit(square(column, row));
+				column += d[0];
+				row += d[1];
+			}
+		}
+		return rays;
+	}
+
+	/**
+	 * Computes the rook attacks by walking the rays square by square. Only used
+	 * to build the lookup tables of {@link MagicBitboards}.
+	 */
+	static long computeRookAttacks(int square, long occupancy) {
+		return slide(square, occupancy, rookDirections);
+	}
+
+	static long computeBishopAttacks(int square, long occupancy) {
+		return slide(square, occupancy, bishopDirections);
+	}
+
+	/**
+	 * @return the squares whose occupancy matters for the attacks of a rook on the
+	 *         given square
+	 */
+	static long rookOccupancyMask(int square) {
+		return edgelessRays(square, rookDirections);
+	}
+
+	static long bishopOccupancyMask(int square) {
+		return edgelessRays(square, bishopDirections);
+	}
+
+	/**
+	 * @return all squares a rook on the given square can reach including the
+	 *         first occupied square in each direction
+	 */
+	public static long rookAttacks(int square, long occupancy) {
+		return MagicBitboards.rookAttacks(square, occupancy);
+	}
+
+	/**
+	 * @return all squares a bishop on the given square can reach including the
+	 *         first occupied square in each direction
+	 */
+	public static long bishopAttacks(int square, long occupancy) {
+		return MagicBitboards.bishopAttacks(square, occupancy);
+	}
+
+	/**
+	 * @return the squares strictly between two squares on a common row, column or
+	 *         diagonal or {@link #EMPTY} if they are not aligned
+	 */
+	public static long between(int a, int b) {
+		return between[a][b];
+	}
+
+	/**
+	 * @return the whole row, column or diagonal through two aligned squares or
+	 *         {@link #EMPTY} if they are not aligned
+	 */
+	public static long line(int a, int b) {
+		return line[a][b];
+	}
+
+	public static long queenAttacks(int square, long occupancy) {
+		return MagicBitboards.rookAttacks(square, occupancy) | MagicBitboards.bishopAttacks(square, occupancy);
+	}
+
+}
@@ -4,15 +4,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import de.thohee.useless.chess.board.Move.Capture;
 import de.thohee.useless.chess.board.Move.Castling;
@@ -20,77 +15,15 @@ import de.thohee.useless.chess.board.Move.IllegalMoveFormatException;
 
 public class BoardPosition {
 
-	public class RepeatablePosition {
-		private final ChessBoard board;
-		private final Colour colourToMove;
-		private final boolean canCaptureEnPassant;
-		private final Set<Piece> castlingPieces;
-
-		public RepeatablePosition(ChessBoard board, Colour colourToMove, boolean canCaptureEnPassant,
-				Set<Piece> castlingPieces) {
-			this.board = board;
-			this.colourToMove = colourToMove;
-			this.canCaptureEnPassant = canCaptureEnPassant;
-			this.castlingPieces = new HashSet<>(castlingPieces);
-		}
-
-		@Override
-		public int hashCode() {
-			return Objects.hash(colourToMove, canCaptureEnPassant, board, castlingPieces);
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			RepeatablePosition other = (RepeatablePosition) obj;
-			return colourToMove == other.colourToMove && canCaptureEnPassant == other.canCaptureEnPassant
-					&& Objects.equals(castlingPieces, other.castlingPieces) && Objects.equals(board, other.board);
-		}
-
-	}
-
-	public class Key {
-		private final RepeatablePosition position;
-		private final int depth;
-
-		public Key(RepeatablePosition position, int depth) {
-			super();
-			this.position = position;
-			this.depth = depth;
-		}
-
-		@Override
-		public int hashCode() {
-			return depth + 1000 * position.hashCode();
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			Key other = (Key) obj;
-			return other.depth == this.depth && Objects.equals(other.position, this.position);
-		}
-	}
-
 	public class Predecessor {
 		private final Predecessor predecessor;
-		private final RepeatablePosition position;
+		private final long zobristHash;
 		private Integer repetitions = null;
 		private Integer maxRepetitions = null;
 
-		public Predecessor(Predecessor predecessor, RepeatablePosition position) {
+		public Predecessor(Predecessor predecessor, long zobristHash) {
 			this.predecessor = predecessor;
-			this.position = position;
+			this.zobristHash = zobristHash;
 		}
 
 		public int getRepetitions() {
@@ -98,7 +31,7 @@ public class BoardPosition {
 				repetitions = 0;
 				Predecessor ancestor = predecessor;
 				while (ancestor != null) {
-					if (ancestor.position.equals(this.position)) {
+					if (ancestor.zobristHash == this.zobristHash) {
 						repetitions = ancestor.getRepetitions() + 1;
 						break;
 					}
@@ -117,18 +50,32 @@ public class BoardPosition {
 		}
 	}
 
-	private RepeatablePosition toRepeatablePosition() {
-		return new RepeatablePosition(this.board, this.colourToMove, this.canCaptureEnPassant(), this.castlingPieces);
+	/**
+	 * @return the 64 bit Zobrist hash of the pieces, the side to move, the
+	 *         castling rights and the column of a possible en passant capture
+	 */
+	public long getZobristHash() {
+		long zobristHash = board.getZobristKey() ^ Zobrist.sideToMove(getColourToMove())
+				^ Zobrist.castlingRights(castlingRights);
+		if (canCaptureEnPassant()) {
+			zobristHash ^= Zobrist.enPassant(Bitboards.column(PackedMove.getTo(performedMoves.last())));
+		}
+		return zobristHash;
 	}
 
-	public Key getKey() {
-		return new Key(toRepeatablePosition(), this.depth);
+	/**
+	 * @return the Zobrist hash mixed with the depth, since the evaluation of a
+	 *         position may depend on the number of plies played
+	 */
+	public long getKey() {
+		return getZobristHash() + depth * 0x9E3779B97F4A7C15L;
 	}
 
 	private ChessBoard board = null;
 	private Set<Piece> castlingPieces = null;
+	private int castlingRights = 0;
 	private boolean[] hasCastled = new boolean[] { false, false };
-	private List<Move> performedMoves = null;
+	private MoveList performedMoves = null;
 	private Predecessor predecessor = null;
 	private Predecessor self = null;
 	private Integer numberOfRepetitions = null;
@@ -137,17 +84,43 @@ public class BoardPosition {
 	private int depth = 0;
 
 	// cached computation results
-	private List<Move> allPossibleMoves = null;
-	private List<Move> possibleMoves = null;
-	private Map<Colour, Map<Coordinate, Set<Piece>>> threatsTo = null;
-	private Map<Coordinate, Set<Piece>> protections = null;
-	private Map<Colour, Coordinate> kingPosition = new HashMap<>();
+	private MoveList allPossibleMoves = null;
+	private MoveList possibleMoves = null;
+	// the squares attacked by the pieces of either colour
+	private long[] attacks = null;
 	private Boolean draw = null;
 
+	/**
+	 * Everything {@link BoardPosition#unmakeMove()} needs to restore the position
+	 * before {@link BoardPosition#makeMove(Move)}. The records are reused.
+	 */
+	private static class Undo {
+		private final Coordinate[] changedSquares = new Coordinate[4];
+		private final Piece[] previousPieces = new Piece[4];
+		private int changes = 0;
+		private final List<Piece> removedCastlingPieces = new ArrayList<>(3);
+		private int castlingRights;
+		private boolean hasCastled;
+		private int movesWithoutPawnAndCapture;
+		private int depth;
+		private Predecessor predecessor;
+		private Predecessor self;
+		private Integer numberOfRepetitions;
+		private MoveList allPossibleMoves;
+		private MoveList possibleMoves;
+		private long[] attacks;
+		private Boolean draw;
+	}
+
+	// only search positions have an undo stack
+	private Undo[] undoStack = null;
+	private int undoStackSize = 0;
+	private Undo currentUndo = null;
+
 	BoardPosition() {
 		board = new ChessBoard();
 		castlingPieces = new HashSet<>();
-		performedMoves = new ArrayList<>();
+		performedMoves = new MoveList();
 	}
 
 	@Override
@@ -197,15 +170,48 @@ public class BoardPosition {
 		boardPosition.castlingPieces.add(map.get(Coordinate.get(0, 7)));
 		boardPosition.castlingPieces.add(map.get(Coordinate.get(4, 7)));
 		boardPosition.castlingPieces.add(map.get(Coordinate.get(7, 7)));
+		boardPosition.updateCastlingRights();
 		return boardPosition;
 	}
 
 	BoardPosition(BoardPosition other) {
 		board = new ChessBoard(other.board);
 		castlingPieces = new HashSet<>(other.castlingPieces);
+		castlingRights = other.castlingRights;
 		hasCastled[0] = other.hasCastled[0];
 		hasCastled[1] = other.hasCastled[1];
-		performedMoves = new ArrayList<>(other.performedMoves);
+		performedMoves = new MoveList(other.performedMoves);
+	}
+
+	private BoardPosition copy() {
+		BoardPosition copy = new BoardPosition(this);
+		copy.predecessor = this.predecessor;
+		copy.colourToMove = this.colourToMove;
+		copy.movesWithoutPawnAndCapture = this.movesWithoutPawnAndCapture;
+		copy.depth = this.depth;
+		return copy;
+	}
+
+	/**
+	 * @return a copy of this position, which can be modified in place by
+	 *         {@link #makeMove(Move)} and {@link #unmakeMove()} in order to walk
+	 *         the game tree without copying the position for each visited node
+	 */
+	public BoardPosition createSearchPosition() {
+		BoardPosition searchPosition = copy();
+		searchPosition.undoStack = new Undo[64];
+		return searchPosition;
+	}
+
+	/**
+	 * @return an immutable copy of the current state of a search position
+	 */
+	public BoardPosition createSnapshot() {
+		return copy();
+	}
+
+	public boolean isSearchPosition() {
+		return undoStack != null;
 	}
 
 	public Predecessor getPredecessor() {
@@ -220,6 +226,10 @@ public class BoardPosition {
 		this.depth = depth;
 	}
 
+	void setMovesWithoutPawnAndCapture(int movesWithoutPawnAndCapture) {
+		this.movesWithoutPawnAndCapture = movesWithoutPawnAndCapture;
+	}
+
 	public Piece get(Coordinate coordinate) {
 		return board.get(coordinate);
 	}
@@ -240,73 +250,264 @@ public class BoardPosition {
 		return board.positionedPieces();
 	}
 
+	/**
+	 * @return the squares occupied by the given figures of the given colour, see
+	 *         {@link Bitboards} for the mapping of squares to bits
+	 */
+	public long getBitboard(Colour colour, Figure figure) {
+		return board.getBitboard(colour, figure);
+	}
+
+	public long getOccupancy(Colour colour) {
+		return board.getOccupancy(colour);
+	}
+
+	public long getOccupancy() {
+		return board.getOccupancy();
+	}
+
 	public Set<Piece> getCastlingPieces() {
 		return castlingPieces;
 	}
 
 	public BoardPosition performMove(Move move) {
-		assert (getPossibleMoves().contains(move)) : move;
+		assert (getPossiblePackedMoves().contains(PackedMove.of(move))) : move;
 		return justPerformMove(move);
 	}
 
 	public BoardPosition justPerformMove(Move move) {
 		assert (move != null && move.getColour().equals(getColourToMove()));
+		return justPerformMove(PackedMove.of(move));
+	}
+
+	private BoardPosition justPerformMove(int move) {
 		BoardPosition newBoardPosition = new BoardPosition(this);
+		newBoardPosition.movesWithoutPawnAndCapture = this.movesWithoutPawnAndCapture;
+		newBoardPosition.depth = this.depth;
+		newBoardPosition.applyMove(move);
+
+		if (self == null) {
+			self = new Predecessor(this.predecessor, getZobristHash());
+		}
+		newBoardPosition.predecessor = self;
+
+		return newBoardPosition;
+	}
+
+	/**
+	 * Performs the move on this search position in place. The previous state is
+	 * pushed onto the undo stack and restored by {@link #unmakeMove()}.
+	 */
+	public void makeMove(Move move) {
+		makeMove(PackedMove.of(move));
+	}
+
+	/**
+	 * @see #makeMove(Move)
+	 */
+	public void makeMove(int move) {
+		assert (isSearchPosition());
+		assert (move != PackedMove.NONE && PackedMove.getColour(move) == getColourToMove());
+		if (undoStackSize == undoStack.length) {
+			undoStack = Arrays.copyOf(undoStack, 2 * undoStack.length);
+		}
+		Undo undo = undoStack[undoStackSize];
+		if (undo == null) {
+			undo = new Undo();
+			undoStack[undoStackSize] = undo;
+		}
+		++undoStackSize;
+
+		if (self == null) {
+			self = new Predecessor(this.predecessor, getZobristHash());
+		}
+		undo.changes = 0;
+		undo.removedCastlingPieces.clear();
+		undo.castlingRights = castlingRights;
+		undo.hasCastled = hasCastled[PackedMove.getColour(move).ordinal()];
+		undo.movesWithoutPawnAndCapture = movesWithoutPawnAndCapture;
+		undo.depth = depth;
+		undo.predecessor = predecessor;
+		undo.self = self;
+		undo.numberOfRepetitions = numberOfRepetitions;
+		undo.allPossibleMoves = allPossibleMoves;
+		undo.possibleMoves = possibleMoves;
+		undo.attacks = attacks;
+		undo.draw = draw;
+
+		predecessor = self;
+		self = null;
+		numberOfRepetitions = null;
+		resetCachedValues();
+
+		currentUndo = undo;
+		if (PackedMove.isNullMove(move)) {
+			applyNullMove(move);
+		} else {
+			applyMove(move);
+		}
+		currentUndo = null;
+	}
+
+	/**
+	 * Passes the turn to the opponent on this search position, which is illegal
+	 * in chess but tells the search what the opponent could do if it was its turn
+	 * again. It is taken back by {@link #unmakeMove()} like any other move.
+	 */
+	public void makeNullMove() {
+		assert (!isCheck());
+		makeMove(PackedMove.nullMove(getColourToMove()));
+	}
+
+	/**
+	 * Takes back the last move performed by {@link #makeMove(Move)}.
+	 */
+	public void unmakeMove() {
+		assert (isSearchPosition() && undoStackSize > 0);
+		Undo undo = undoStack[--undoStackSize];
+		final int move = performedMoves.removeLast();
+		for (int i = undo.changes - 1; i >= 0; --i) {
+			if (undo.previousPieces[i] != null) {
+				board.put(undo.changedSquares[i], undo.previousPieces[i]);
+			} else {
+				board.remove(undo.changedSquares[i]);
+			}
+			undo.previousPieces[i] = null;
+		}
+		castlingPieces.addAll(undo.removedCastlingPieces);
+		castlingRights = undo.castlingRights;
+		hasCastled[PackedMove.getColour(move).ordinal()] = undo.hasCastled;
+		movesWithoutPawnAndCapture = undo.movesWithoutPawnAndCapture;
+		depth = undo.depth;
+		predecessor = undo.predecessor;
+		self = undo.self;
+		numberOfRepetitions = undo.numberOfRepetitions;
+		allPossibleMoves = undo.allPossibleMoves;
+		possibleMoves = undo.possibleMoves;
+		attacks = undo.attacks;
+		draw = undo.draw;
+		// do not keep the caches of the taken back position alive
+		undo.predecessor = null;
+		undo.self = null;
+		undo.allPossibleMoves = null;
+		undo.possibleMoves = null;
+		undo.attacks = null;
+	}
+
+	private void applyMove(int move) {
 		boolean moveWithoutPawnAndCapture = true;
-		if (move.getCastling() == null) {
-			movePiece(newBoardPosition, move.getFrom(), move.getTo(), move.getNewFigure());
-			newBoardPosition.castlingPieces.remove(newBoardPosition.get(move.getTo()));
-			moveWithoutPawnAndCapture = !move.getFigure().equals(Figure.Pawn) && move.getCapture().equals(Capture.None);
+		final Colour colour = PackedMove.getColour(move);
+		final Coordinate to = Coordinate.get(PackedMove.getTo(move));
+		if (!PackedMove.isCastling(move)) {
+			movePiece(Coordinate.get(PackedMove.getFrom(move)), to, PackedMove.getNewFigure(move));
+			removeCastlingPiece(get(to));
+			moveWithoutPawnAndCapture = PackedMove.getFigure(move) != Figure.Pawn && !PackedMove.isCapture(move);
 		} else {
-			performCastling(newBoardPosition, move.getColour(), move.getCastling());
-			newBoardPosition.castlingPieces.removeIf(p -> p.getColour().equals(move.getColour()));
+			performCastling(colour, PackedMove.getCastling(move));
+			for (Piece piece : castlingPieces.toArray(new Piece[castlingPieces.size()])) {
+				if (piece.getColour().equals(colour)) {
+					removeCastlingPiece(piece);
+				}
+			}
+		}
+		// castlings are encoded as move of the king
+		if (castlingRights != 0 && ((Bitboards.bit(PackedMove.getFrom(move))
+				| Bitboards.bit(PackedMove.getTo(move))) & castlingSquares) != 0L) {
+			updateCastlingRights();
 		}
-		newBoardPosition.performedMoves.add(move);
-		newBoardPosition.depth = this.depth + 1;
+		performedMoves.add(move);
+		++depth;
 
 		if (moveWithoutPawnAndCapture) {
-			newBoardPosition.movesWithoutPawnAndCapture = this.movesWithoutPawnAndCapture + 1;
-		} // else reset to default 0
+			++movesWithoutPawnAndCapture;
+		} else {
+			movesWithoutPawnAndCapture = 0;
+		}
+	}
 
-		if (self == null) {
-			self = new Predecessor(this.predecessor, toRepeatablePosition());
+	private void applyNullMove(int move) {
+		performedMoves.add(move);
+		++depth;
+		++movesWithoutPawnAndCapture;
+	}
+
+	private static final long castlingSquares = Bitboards.bit(Coordinate.a1) | Bitboards.bit(Coordinate.e1)
+			| Bitboards.bit(Coordinate.h1) | Bitboards.bit(Coordinate.a8) | Bitboards.bit(Coordinate.e8)
+			| Bitboards.bit(Coordinate.h8);
+
+	private boolean isCastlingPiece(int column, int row, Colour colour, Figure figure) {
+		Piece piece = get(column, row);
+		return piece != null && piece.getColour() == colour && piece.getFigure() == figure
+				&& castlingPieces.contains(piece);
+	}
+
+	private void updateCastlingRights() {
+		castlingRights = 0;
+		if (isCastlingPiece(4, 0, Colour.White, Figure.King)) {
+			if (isCastlingPiece(7, 0, Colour.White, Figure.Rook)) {
+				castlingRights |= Zobrist.WHITE_KING_SIDE;
+			}
+			if (isCastlingPiece(0, 0, Colour.White, Figure.Rook)) {
+				castlingRights |= Zobrist.WHITE_QUEEN_SIDE;
+			}
 		}
-		newBoardPosition.predecessor = self;
+		if (isCastlingPiece(4, 7, Colour.Black, Figure.King)) {
+			if (isCastlingPiece(7, 7, Colour.Black, Figure.Rook)) {
+				castlingRights |= Zobrist.BLACK_KING_SIDE;
+			}
+			if (isCastlingPiece(0, 7, Colour.Black, Figure.Rook)) {
+				castlingRights |= Zobrist.BLACK_QUEEN_SIDE;
+			}
+		}
+	}
 
-		return newBoardPosition;
+	private void removeCastlingPiece(Piece piece) {
+		if (castlingPieces.remove(piece) && currentUndo != null) {
+			currentUndo.removedCastlingPieces.add(piece);
+		}
 	}
 
-	private static void movePiece(BoardPosition boardPosition, Coordinate from, Coordinate to, Figure newFigure) {
-		Piece piece = boardPosition.board.get(from);
+	private void recordChange(Coordinate coordinate) {
+		if (currentUndo != null) {
+			currentUndo.changedSquares[currentUndo.changes] = coordinate;
+			currentUndo.previousPieces[currentUndo.changes] = board.get(coordinate);
+			++currentUndo.changes;
+		}
+	}
+
+	private void movePiece(Coordinate from, Coordinate to, Figure newFigure) {
+		Piece piece = board.get(from);
 		assert (piece != null);
 		if (newFigure != null) {
 			piece = new Piece(piece.getColour(), newFigure);
 		}
-		if (Figure.Pawn.equals(piece.getFigure()) && to.getColumn() != from.getColumn()
-				&& boardPosition.board.get(to) == null) {
+		if (Figure.Pawn.equals(piece.getFigure()) && to.getColumn() != from.getColumn() && board.get(to) == null) {
 			// en passant
 			int direction = piece.getColour().equals(Colour.White) ? 1 : -1;
 			Coordinate captureTarget = makeCoordinate(to.getColumn(), to.getRow() - direction);
-			assert (captureTarget != null && boardPosition.get(captureTarget) != null);
-			boardPosition.board.remove(captureTarget);
+			assert (captureTarget != null && get(captureTarget) != null);
+			recordChange(captureTarget);
+			board.remove(captureTarget);
 		}
-		boardPosition.board.remove(from);
-		boardPosition.board.put(to, piece);
+		recordChange(from);
+		board.remove(from);
+		recordChange(to);
+		board.put(to, piece);
 	}
 
-	private static void performCastling(BoardPosition boardPosition, Colour colour, Castling castling) {
+	private void performCastling(Colour colour, Castling castling) {
 		switch (castling) {
 		case QueenSide:
 			switch (colour) {
 			case White:
 				// rook (0,0) -> (3,0); king (4,0) -> (2,0)
-				movePiece(boardPosition, Coordinate.get(0, 0), Coordinate.get(3, 0), null);
-				movePiece(boardPosition, Coordinate.get(4, 0), Coordinate.get(2, 0), null);
+				movePiece(Coordinate.get(0, 0), Coordinate.get(3, 0), null);
+				movePiece(Coordinate.get(4, 0), Coordinate.get(2, 0), null);
 				break;
 			case Black:
 				// rook (0,7) -> (3,7); king (4,7) -> (2,7)
-				movePiece(boardPosition, Coordinate.get(0, 7), Coordinate.get(3, 7), null);
-				movePiece(boardPosition, Coordinate.get(4, 7), Coordinate.get(2, 7), null);
+				movePiece(Coordinate.get(0, 7), Coordinate.get(3, 7), null);
+				movePiece(Coordinate.get(4, 7), Coordinate.get(2, 7), null);
 				break;
 			}
 			break;
@@ -314,18 +515,18 @@ public class BoardPosition {
 			switch (colour) {
 			case White:
 				// rook (7,0) -> (5,0); king (4,0) -> (6,0)
-				movePiece(boardPosition, Coordinate.get(7, 0), Coordinate.get(5, 0), null);
-				movePiece(boardPosition, Coordinate.get(4, 0), Coordinate.get(6, 0), null);
+				movePiece(Coordinate.get(7, 0), Coordinate.get(5, 0), null);
+				movePiece(Coordinate.get(4, 0), Coordinate.get(6, 0), null);
 				break;
 			case Black:
 				// rook (7,7) -> (5,7); king (4,7) -> (6,7)
-				movePiece(boardPosition, Coordinate.get(7, 7), Coordinate.get(5, 7), null);
-				movePiece(boardPosition, Coordinate.get(4, 7), Coordinate.get(6, 7), null);
+				movePiece(Coordinate.get(7, 7), Coordinate.get(5, 7), null);
+				movePiece(Coordinate.get(4, 7), Coordinate.get(6, 7), null);
 				break;
 			}
 			break;
 		}
-		boardPosition.hasCastled[colour.ordinal()] = true;
+		hasCastled[colour.ordinal()] = true;
 	}
 
 	public boolean hasCastled(Colour colour) {
@@ -343,7 +544,7 @@ public class BoardPosition {
 
 	private boolean threatsToAny(Colour colour, int row, List<Integer> columns) {
 		for (int c : columns) {
-			if (!threatsTo(colour, Coordinate.get(c, row)).isEmpty()) {
+			if (Bitboards.contains(attacks[colour.opposite().ordinal()], Bitboards.square(c, row))) {
 				return true;
 			}
 		}
@@ -351,27 +552,31 @@ public class BoardPosition {
 	}
 
 	List<Move> getPossibleCastlings(Colour colour) {
+		MoveList possibleCastlings = new MoveList(2);
+		addPossibleCastlings(colour, possibleCastlings);
+		return possibleCastlings.toMoves();
+	}
+
+	private void addPossibleCastlings(Colour colour, MoveList moves) {
 		if (castlingPieces.isEmpty()) {
-			return Collections.emptyList();
+			return;
 		}
 		int row = colour.equals(Colour.White) ? 0 : 7;
 		Piece king = get(4, row);
 		Piece kingSideRook = get(7, row);
 		Piece queenSideRook = get(0, row);
-		List<Move> possibleCastlings = new LinkedList<>();
 		if (king != null && king.getFigure().equals(Figure.King) && castlingPieces.contains(king)) {
 			if (kingSideRook != null && kingSideRook.getFigure().equals(Figure.Rook)
 					&& castlingPieces.contains(kingSideRook) && allEmpty(row, Arrays.asList(5, 6))
 					&& !threatsToAny(colour, row, Arrays.asList(4, 5, 6))) {
-				possibleCastlings.add(new Move(colour, Castling.KingSide));
+				moves.add(PackedMove.of(colour, Castling.KingSide));
 			}
 			if (queenSideRook != null && queenSideRook.getFigure().equals(Figure.Rook)
 					&& castlingPieces.contains(queenSideRook) && allEmpty(row, Arrays.asList(1, 2, 3))
 					&& !threatsToAny(colour, row, Arrays.asList(2, 3, 4))) {
-				possibleCastlings.add(new Move(colour, Castling.QueenSide));
+				moves.add(PackedMove.of(colour, Castling.QueenSide));
 			}
 		}
-		return possibleCastlings;
 	}
 
 	private static Coordinate makeCoordinate(int column, int row) {
@@ -382,61 +587,19 @@ public class BoardPosition {
 		}
 	}
 
-	private static class Direction {
-		public final int dc;
-		public final int dr;
-
-		public Direction(int dc, int dr) {
-			this.dc = dc;
-			this.dr = dr;
-		}
-	}
-
 	private static final int[] turns = { -1, 1 };
 
-	private static final Direction[] rookDirections = { new Direction(-1, 0), new Direction(1, 0), new Direction(0, -1),
-			new Direction(0, 1) };
-
-	private static final Direction[] bishopDirections = { new Direction(-1, -1), new Direction(1, -1),
-			new Direction(-1, 1), new Direction(1, 1) };
-
 	private static final Figure[] promotionFigures = { Figure.Queen, Figure.Knight, Figure.Bishop, Figure.Rook };
 
-	private void goAsFarAsPossible(final Piece piece, final Coordinate startPosition, final Direction[] directions,
-			final int maxOffset, List<Move> moves) {
-		final Colour colourToMove = piece.getColour();
-		for (Direction d : directions) {
-			for (int offset = 1; offset <= maxOffset; ++offset) {
-				Coordinate target = makeCoordinate(startPosition.getColumn() + offset * d.dc,
-						startPosition.getRow() + offset * d.dr);
-				if (target == null) {
-					break;
-				}
-				Piece p = get(target);
-				if (p == null) {
-					moves.add(new Move(colourToMove, piece.getFigure(), startPosition, target, Capture.None));
-				} else if (!p.getColour().equals(colourToMove)) {
-					moves.add(new Move(colourToMove, piece.getFigure(), startPosition, target, Capture.Regular));
-				} else {
-					protections.computeIfAbsent(target, c -> new HashSet<>()).add(piece);
-				}
-				if (p != null) {
-					// either we are blocked by one of our own or we beat one
-					break;
-				}
-			}
-		}
-	}
-
 	private static void addPawnMoves(final Colour colour, final Coordinate position, final Coordinate target,
-			final Capture capture, List<Move> moves) {
+			final Capture capture, MoveList moves) {
 		if (target.getRow() == (colour.equals(Colour.White) ? 7 : 0)) {
 			// promotion
 			for (Figure figure : promotionFigures) {
-				moves.add(new Move(colour, Figure.Pawn, position, target, capture, figure));
+				moves.add(PackedMove.of(colour, position.ordinal(), target.ordinal(), capture, figure));
 			}
 		} else {
-			moves.add(new Move(colour, Figure.Pawn, position, target, capture));
+			moves.add(PackedMove.of(colour, Figure.Pawn, position.ordinal(), target.ordinal(), capture));
 		}
 	}
 
@@ -449,13 +612,15 @@ public class BoardPosition {
 	}
 
 	boolean canCaptureEnPassant() {
-		Move lastMove = getLastMove();
-		if (lastMove != null && lastMove.getFigure() == Figure.Pawn) {
-			final boolean whiteMoved = lastMove.getColour() == Colour.White;
+		final int lastMove = performedMoves.last();
+		if (lastMove != PackedMove.NONE && !PackedMove.isCastling(lastMove)
+				&& PackedMove.getFigure(lastMove) == Figure.Pawn) {
+			final boolean whiteMoved = PackedMove.getColour(lastMove) == Colour.White;
 			final int sourceRow = whiteMoved ? 1 : 6;
 			final int targetRow = whiteMoved ? 3 : 4;
-			final int column = lastMove.getTo().getColumn();
-			if (lastMove.getFrom().getRow() == sourceRow && lastMove.getTo().getRow() == targetRow) {
+			final int column = Bitboards.column(PackedMove.getTo(lastMove));
+			if (Bitboards.row(PackedMove.getFrom(lastMove)) == sourceRow
+					&& Bitboards.row(PackedMove.getTo(lastMove)) == targetRow) {
 				final Colour colourToMove = getColourToMove();
 				assert (whiteMoved == (colourToMove == Colour.Black));
 				return pawnOfColour(column - 1, targetRow, colourToMove)
@@ -465,9 +630,22 @@ public class BoardPosition {
 		return false;
 	}
 
-	private void computePossibleMoves(PositionedPiece positionedPiece, List<Move> moves) {
-		Piece piece = positionedPiece.getPiece();
-		Coordinate position = positionedPiece.getCoordinate();
+	private void addMoves(final Piece piece, final Coordinate startPosition, long targets, MoveList moves) {
+		final Colour colour = piece.getColour();
+		final long opponentsPieces = board.getOccupancy(colour.opposite());
+		targets &= ~board.getOccupancy(colour);
+		while (targets != 0L) {
+			final int square = Bitboards.first(targets);
+			targets = Bitboards.withoutFirst(targets);
+			if (Bitboards.contains(opponentsPieces, square)) {
+				moves.add(PackedMove.of(colour, piece.getFigure(), startPosition.ordinal(), square, Capture.Regular));
+			} else {
+				moves.add(PackedMove.of(colour, piece.getFigure(), startPosition.ordinal(), square, Capture.None));
+			}
+		}
+	}
+
+	private void computePossibleMoves(Coordinate position, Piece piece, MoveList moves) {
 		Colour colour = piece.getColour();
 		switch (piece.getFigure()) {
 		case Pawn: {
@@ -480,98 +658,108 @@ public class BoardPosition {
 					Coordinate twoStepTarget = makeCoordinate(position.getColumn(), position.getRow() + 2 * step);
 					if (twoStepTarget != null && get(twoStepTarget) == null) {
 						// no promotion possible
-						moves.add(new Move(colour, Figure.Pawn, position, twoStepTarget, Capture.None));
+						moves.add(PackedMove.of(colour, Figure.Pawn, position.ordinal(), twoStepTarget.ordinal(),
+								Capture.None));
 					}
 				}
 			}
 			for (int dc : turns) {
 				Coordinate captureTarget = makeCoordinate(position.getColumn() + dc, position.getRow() + step);
 				if (captureTarget != null) {
-					final Move lastMove = getLastMove();
+					final int lastMove = performedMoves.last();
 					Piece otherPiece = get(captureTarget);
 					if (otherPiece != null) {
 						if (otherPiece.getColour().equals(colour.opposite())) {
 							addPawnMoves(colour, position, captureTarget, Capture.Regular, moves);
-						} else {
-							protections.computeIfAbsent(captureTarget, c -> new HashSet<>()).add(piece);
 						}
-					} else if (lastMove != null && !lastMove.getColour().equals(colour)
-							&& Figure.Pawn.equals(lastMove.getFigure())
-							&& lastMove.getFrom().getColumn() == captureTarget.getColumn()
-							&& lastMove.getFrom().getRow() == captureTarget.getRow() + step
-							&& lastMove.getTo().getColumn() == captureTarget.getColumn()
-							&& lastMove.getTo().getRow() == captureTarget.getRow() - step) {
+					} else if (lastMove != PackedMove.NONE && PackedMove.getColour(lastMove) != colour
+							&& !PackedMove.isCastling(lastMove) && PackedMove.getFigure(lastMove) == Figure.Pawn
+							&& PackedMove.getFrom(lastMove) == captureTarget.ordinal() + step
+							&& PackedMove.getTo(lastMove) == captureTarget.ordinal() - step) {
 						// en passant
 						// no promotion possible
-						moves.add(new Move(colour, Figure.Pawn, position, captureTarget, Capture.EnPassant));
-					} else {
-						threatsTo.get(colour.opposite()).computeIfAbsent(captureTarget, c -> new HashSet<>())
-								.add(piece);
+						moves.add(PackedMove.of(colour, Figure.Pawn, position.ordinal(), captureTarget.ordinal(),
+								Capture.EnPassant));
 					}
 				}
 			}
 			break;
 		}
 		case Knight:
-			for (Direction d : rookDirections) {
-				for (int turn : turns) {
-					Coordinate target = d.dc == 0
-							? makeCoordinate(position.getColumn() + turn, position.getRow() + 2 * d.dr)
-							: makeCoordinate(position.getColumn() + 2 * d.dc, position.getRow() + turn);
-					if (target != null) {
-						Piece p = get(target);
-						if (p == null) {
-							moves.add(new Move(colour, piece.getFigure(), position, target, Capture.None));
-						} else if (!p.getColour().equals(colour)) {
-							moves.add(new Move(colour, piece.getFigure(), position, target, Capture.Regular));
-						} else {
-							protections.computeIfAbsent(target, c -> new HashSet<>()).add(piece);
-						}
-					}
-				}
-			}
+			addMoves(piece, position, Bitboards.knightAttacks(position.ordinal()), moves);
 			break;
 		case Bishop:
-			goAsFarAsPossible(piece, position, bishopDirections, 7, moves);
+			addMoves(piece, position, Bitboards.bishopAttacks(position.ordinal(), board.getOccupancy()),
+					moves);
 			break;
 		case Rook:
-			goAsFarAsPossible(piece, position, rookDirections, 7, moves);
+			addMoves(piece, position, Bitboards.rookAttacks(position.ordinal(), board.getOccupancy()),
+					moves);
 			break;
 		case Queen:
-			goAsFarAsPossible(piece, position, bishopDirections, 7, moves);
-			goAsFarAsPossible(piece, position, rookDirections, 7, moves);
+			addMoves(piece, position, Bitboards.queenAttacks(position.ordinal(), board.getOccupancy()),
+					moves);
 			break;
 		case King: {
-			List<Move> tmp = new LinkedList<>();
-			goAsFarAsPossible(piece, position, bishopDirections, 1, tmp);
-			goAsFarAsPossible(piece, position, rookDirections, 1, tmp);
-			tmp = tmp.stream().filter(m -> threatsTo(colour, m.getTo()).isEmpty() && protections(m.getTo()).isEmpty())
-					.collect(Collectors.toList());
-			moves.addAll(tmp);
-			kingPosition.put(colour, position);
+			// the king must neither move to a threatened square nor capture a protected
+			// piece
+			addMoves(piece, position, Bitboards.kingAttacks(position.ordinal()) & ~attacks[colour.opposite().ordinal()],
+					moves);
 			break;
 		}
 		}
 	}
 
-	public Set<Piece> getThreatsTo(Colour colour, Coordinate coordinate) {
+	/**
+	 * @return all squares attacked by the pieces of the given colour, including
+	 *         the squares of the own pieces they protect
+	 */
+	public long getAttacks(Colour colour) {
 		analyze0();
-		return threatsTo(colour, coordinate);
+		return attacks[colour.ordinal()];
 	}
 
-	private Set<Piece> threatsTo(Colour colour, Coordinate coordinate) {
-		Set<Piece> threats = threatsTo.get(colour).get(coordinate);
-		return threats != null ? threats : Collections.emptySet();
+	/**
+	 * @return the squares of the pieces of the given colour attacking (or
+	 *         protecting) the given square
+	 */
+	public long getAttackersTo(Coordinate coordinate, Colour colour) {
+		return attackersTo(coordinate.ordinal(), colour, board.getOccupancy());
 	}
 
-	public Set<Piece> getProtections(Coordinate coordinate) {
-		analyze0();
-		return protections(coordinate);
+	private Set<Piece> getPieces(long squares) {
+		Set<Piece> pieces = new HashSet<>();
+		while (squares != 0L) {
+			pieces.add(board.get(Bitboards.first(squares)));
+			squares = Bitboards.withoutFirst(squares);
+		}
+		return pieces;
 	}
 
-	private Set<Piece> protections(Coordinate coordinate) {
-		Set<Piece> result = protections.get(coordinate);
-		return result != null ? result : Collections.emptySet();
+	/**
+	 * @return the opponent's pieces attacking the given square, unless it is
+	 *         occupied by an opponent's piece. Prefer
+	 *         {@link #getAttackersTo(Coordinate, Colour)}, which does not
+	 *         allocate.
+	 */
+	public Set<Piece> getThreatsTo(Colour colour, Coordinate coordinate) {
+		if (Bitboards.contains(board.getOccupancy(colour.opposite()), coordinate.ordinal())) {
+			return Collections.emptySet();
+		}
+		return getPieces(getAttackersTo(coordinate, colour.opposite()));
+	}
+
+	/**
+	 * @return the pieces protecting the piece on the given square. Prefer
+	 *         {@link #getAttackersTo(Coordinate, Colour)}, which does not
+	 *         allocate.
+	 */
+	public Set<Piece> getProtections(Coordinate coordinate) {
+		Piece piece = get(coordinate);
+		if (piece == null) {
+			return Collections.emptySet();
+		}
+		return getPieces(getAttackersTo(coordinate, piece.getColour()));
 	}
 
 	public boolean isCheck() {
@@ -580,7 +768,7 @@ public class BoardPosition {
 	}
 
 	private boolean checkTo(Colour colour) {
-		return !threatsTo(colour, kingPosition.get(colour)).isEmpty();
+		return (board.getBitboard(colour, Figure.King) & attacks[colour.opposite().ordinal()]) != 0L;
 	}
 
 	public boolean isStillCheck() {
@@ -611,7 +799,7 @@ public class BoardPosition {
 	public int getNumberOfRepetitions() {
 		if (numberOfRepetitions == null) {
 			if (self == null) {
-				self = new Predecessor(this.predecessor, toRepeatablePosition());
+				self = new Predecessor(this.predecessor, getZobristHash());
 			}
 			numberOfRepetitions = self.getRepetitions();
 		}
@@ -620,18 +808,14 @@ public class BoardPosition {
 
 	public int getMaxNumberOfRepetitions() {
 		if (self == null) {
-			self = new Predecessor(this.predecessor, toRepeatablePosition());
+			self = new Predecessor(this.predecessor, getZobristHash());
 		}
 		return self.getMaxRepetitions();
 	}
 
-	private boolean onlyKingsLeft(Iterator<Piece> iterator) {
-		while (iterator.hasNext()) {
-			if (!iterator.next().getFigure().equals(Figure.King)) {
-				return false;
-			}
-		}
-		return true;
+	private boolean onlyKingsLeft() {
+		return board.getOccupancy() == (board.getBitboard(Colour.White, Figure.King)
+				| board.getBitboard(Colour.Black, Figure.King));
 	}
 
 	public boolean isDrawDisregardingStalemateAndThreeFoldRepetition() {
@@ -642,7 +826,7 @@ public class BoardPosition {
 		}
 
 		// only the two kings are left
-		if (board.size() == 2 && onlyKingsLeft(board.pieces())) {
+		if (board.size() == 2 && onlyKingsLeft()) {
 			return true;
 		}
 
@@ -664,8 +848,8 @@ public class BoardPosition {
 	}
 
 	public Colour getColourToMove() {
-		final Move lastMove = getLastMove();
-		return lastMove != null ? lastMove.getColour().opposite()
+		final int lastMove = performedMoves.last();
+		return lastMove != PackedMove.NONE ? PackedMove.getColour(lastMove).opposite()
 				: (colourToMove != null ? colourToMove : Colour.White);
 	}
 
@@ -677,34 +861,47 @@ public class BoardPosition {
 		if (allPossibleMoves != null) {
 			return;
 		}
-		threatsTo = new HashMap<>();
-		threatsTo.put(Colour.White, new HashMap<>());
-		threatsTo.put(Colour.Black, new HashMap<>());
-		protections = new HashMap<>();
-		Colour colourToMove = getColourToMove();
-		for (Colour colour : Arrays.asList(colourToMove.opposite(), colourToMove)) {
-			List<Move> moves = new LinkedList<>();
-			Iterator<PositionedPiece> iterator = board.positionedPieces();
-			while (iterator.hasNext()) {
-				PositionedPiece entry = iterator.next();
-				if (entry.getPiece().getColour().equals(colour)) {
-					computePossibleMoves(entry, moves);
-				}
-			}
-			Colour opponent = colour.opposite();
-			for (Move move : moves) {
-				if (!move.getFigure().equals(Figure.Pawn) || Capture.Regular.equals(move.getCapture())) {
-					threatsTo.get(opponent).computeIfAbsent(move.getTo(), c -> new HashSet<>())
-							.add(get(move.getFrom()));
-				}
-			}
-			if (colour.equals(colourToMove)) {
-				if (!checkTo(colour)) {
-					moves.addAll(getPossibleCastlings(colourToMove));
-				}
-				allPossibleMoves = new ArrayList<>(moves);
-			}
+		attacks = new long[] { computeAttacks(Colour.White), computeAttacks(Colour.Black) };
+		// the opponent's moves are not needed anymore, since its attacks are known
+		final Colour colourToMove = getColourToMove();
+		MoveList moves = new MoveList();
+		long pieces = board.getOccupancy(colourToMove);
+		while (pieces != 0L) {
+			final int square = Bitboards.first(pieces);
+			pieces = Bitboards.withoutFirst(pieces);
+			computePossibleMoves(Coordinate.get(square), board.get(square), moves);
+		}
+		if (!checkTo(colourToMove)) {
+			addPossibleCastlings(colourToMove, moves);
+		}
+		allPossibleMoves = moves;
+	}
+
+	private long computeAttacks(Colour colour) {
+		final long occupancy = board.getOccupancy();
+		long result = Bitboards.pawnAttacks(colour, board.getBitboard(colour, Figure.Pawn));
+		long knights = board.getBitboard(colour, Figure.Knight);
+		while (knights != 0L) {
+			result |= Bitboards.knightAttacks(Bitboards.first(knights));
+			knights = Bitboards.withoutFirst(knights);
+		}
+		final long queens = board.getBitboard(colour, Figure.Queen);
+		long bishopsAndQueens = board.getBitboard(colour, Figure.Bishop) | queens;
+		while (bishopsAndQueens != 0L) {
+			result |= Bitboards.bishopAttacks(Bitboards.first(bishopsAndQueens), occupancy);
+			bishopsAndQueens = Bitboards.withoutFirst(bishopsAndQueens);
+		}
+		long rooksAndQueens = board.getBitboard(colour, Figure.Rook) | queens;
+		while (rooksAndQueens != 0L) {
+			result |= Bitboards.rookAttacks(Bitboards.first(rooksAndQueens), occupancy);
+			rooksAndQueens = Bitboards.withoutFirst(rooksAndQueens);
+		}
+		long kings = board.getBitboard(colour, Figure.King);
+		while (kings != 0L) {
+			result |= Bitboards.kingAttacks(Bitboards.first(kings));
+			kings = Bitboards.withoutFirst(kings);
 		}
+		return result;
 	}
 
 	void analyze() {
@@ -713,20 +910,125 @@ public class BoardPosition {
 			return;
 		}
 		// only those moves are allowed which do not leave the king in check
-		possibleMoves = allPossibleMoves.stream().filter(m -> !justPerformMove(m).isStillCheck())
-				.collect(Collectors.toList());
+		MoveList moves = new MoveList(allPossibleMoves.size());
+		final Colour colour = getColourToMove();
+		final long king = board.getBitboard(colour, Figure.King);
+		if (king == 0L) {
+			for (int i = 0; i < allPossibleMoves.size(); ++i) {
+				moves.add(allPossibleMoves.get(i));
+			}
+		} else {
+			final int kingSquare = Bitboards.first(king);
+			final long checkers = attackersTo(kingSquare, colour.opposite(), board.getOccupancy());
+			final long pinned = pinnedPieces(kingSquare, colour);
+			// the squares a piece other than the king may move to
+			long evasions = ~Bitboards.EMPTY;
+			if (Bitboards.count(checkers) == 1) {
+				// capture the checking piece or block its way
+				evasions = checkers | Bitboards.between(kingSquare, Bitboards.first(checkers));
+			} else if (checkers != 0L) {
+				// only the king can evade a double check
+				evasions = Bitboards.EMPTY;
+			}
+			for (int i = 0; i < allPossibleMoves.size(); ++i) {
+				final int move = allPossibleMoves.get(i);
+				if (isLegal(move, kingSquare, evasions, pinned)) {
+					moves.add(move);
+				}
+			}
+		}
+		possibleMoves = moves;
 		this.draw = draw();
 	}
 
+	/**
+	 * @return the pieces of the given colour attacking the square given the
+	 *         occupancy of the board
+	 */
+	long attackersTo(int square, Colour colour, long occupancy) {
+		final long queens = board.getBitboard(colour, Figure.Queen);
+		final long bishopsAndQueens = board.getBitboard(colour, Figure.Bishop) | queens;
+		final long rooksAndQueens = board.getBitboard(colour, Figure.Rook) | queens;
+		return (Bitboards.pawnAttacks(colour.opposite(), square) & board.getBitboard(colour, Figure.Pawn))
+				| (Bitboards.knightAttacks(square) & board.getBitboard(colour, Figure.Knight))
+				| (Bitboards.kingAttacks(square) & board.getBitboard(colour, Figure.King))
+				| (Bitboards.bishopAttacks(square, occupancy) & bishopsAndQueens)
+				| (Bitboards.rookAttacks(square, occupancy) & rooksAndQueens);
+	}
+
+	/**
+	 * @return the pieces of the given colour, which cannot leave the line between
+	 *         their king and an opponent's sliding piece
+	 */
+	private long pinnedPieces(int kingSquare, Colour colour) {
+		final Colour opponent = colour.opposite();
+		final long queens = board.getBitboard(opponent, Figure.Queen);
+		long snipers = (Bitboards.rookAttacks(kingSquare, Bitboards.EMPTY)
+				& (board.getBitboard(opponent, Figure.Rook) | queens))
+				| (Bitboards.bishopAttacks(kingSquare, Bitboards.EMPTY)
+						& (board.getBitboard(opponent, Figure.Bishop) | queens));
+		long pinned = Bitboards.EMPTY;
+		while (snipers != 0L) {
+			final int sniper = Bitboards.first(snipers);
+			snipers = Bitboards.withoutFirst(snipers);
+			final long blockers = Bitboards.between(kingSquare, sniper) & board.getOccupancy();
+			if (Bitboards.count(blockers) == 1) {
+				pinned |= blockers & board.getOccupancy(colour);
+			}
+		}
+		return pinned;
+	}
+
+	private boolean isLegal(int move, int kingSquare, long evasions, long pinned) {
+		if (PackedMove.isCastling(move)) {
+			// only generated if the king is not in check and does not pass threatened
+			// squares
+			return true;
+		}
+		final Colour opponent = PackedMove.getColour(move).opposite();
+		final int from = PackedMove.getFrom(move);
+		final int to = PackedMove.getTo(move);
+		final long occupancy = board.getOccupancy();
+		if (from == kingSquare) {
+			// the king must not stay in the line of a sliding piece, nor capture a
+			// protected piece
+			return (attackersTo(to, opponent, occupancy ^ Bitboards.bit(from)) & ~Bitboards.bit(to)) == 0L;
+		} else if (PackedMove.getCapture(move) == Capture.EnPassant) {
+			// two pieces leave the row of the king at once
+			final long captured = Bitboards.bit(Bitboards.square(Bitboards.column(to), Bitboards.row(from)));
+			final long occupancyAfterMove = (occupancy ^ Bitboards.bit(from) ^ captured) | Bitboards.bit(to);
+			return (attackersTo(kingSquare, opponent, occupancyAfterMove) & ~captured) == 0L;
+		} else {
+			return Bitboards.contains(evasions, to)
+					&& (!Bitboards.contains(pinned, from) || Bitboards.contains(Bitboards.line(kingSquare, from), to));
+		}
+	}
+
 	/**
 	 * @return all allowed moves, which particularly excludes moves, after which
 	 *         the king of the moving color is (still) in check. This requires
 	 *         analyzing the resulting positions as well.
 	 */
 	public List<Move> getPossibleMoves() {
+		return getPossiblePackedMoves().toMoves();
+	}
+
+	/**
+	 * @return the allowed moves even if the game is already drawn, e.g. for
+	 *         counting the leaves of the game tree
+	 */
+	MoveList getLegalPackedMoves() {
+		analyze();
+		return possibleMoves;
+	}
+
+	/**
+	 * @see #getPossibleMoves()
+	 */
+	public MoveList getPossiblePackedMoves() {
 		analyze();
 		if (isCheckmate() || isDraw()) {
-			return Collections.emptyList();
+			return new MoveList(0);
 		}
 		return possibleMoves;
 	}
@@ -736,12 +1038,19 @@ public class BoardPosition {
 	 *         moving color is (still) in check, which is actually not allowed.
 	 */
 	public List<Move> getAllPossibleMoves() {
+		return getAllPossiblePackedMoves().toMoves();
+	}
+
+	/**
+	 * @see #getAllPossibleMoves()
+	 */
+	public MoveList getAllPossiblePackedMoves() {
 		analyze0();
 		return allPossibleMoves;
 	}
 
 	public List<Move> getPerformedMoves() {
-		return performedMoves;
+		return performedMoves.toMoves();
 	}
 
 	public String showPerformedMoves() {
@@ -784,7 +1093,14 @@ public class BoardPosition {
 	}
 
 	public Move getLastMove() {
-		return performedMoves.isEmpty() ? null : performedMoves.get(performedMoves.size() - 1);
+		return performedMoves.isEmpty() ? null : PackedMove.toMove(performedMoves.last());
+	}
+
+	/**
+	 * @return the last performed move or {@link PackedMove#NONE}
+	 */
+	public int getLastPackedMove() {
+		return performedMoves.isEmpty() ? PackedMove.NONE : performedMoves.last();
 	}
 
 	public Move getMove(Coordinate from, Coordinate to) {
@@ -895,7 +1211,7 @@ public class BoardPosition {
 			boardPosition.set(pp.getCoordinate(), pp.getPiece());
 		}
 		if (colourToMove.equals(Colour.Black)) {
-			boardPosition.performedMoves.add(new Move(Colour.White, Castling.KingSide));
+			boardPosition.performedMoves.add(PackedMove.of(Colour.White, Castling.KingSide));
 		}
 		return boardPosition;
 	}
@@ -903,20 +1219,24 @@ public class BoardPosition {
 	private void resetCachedValues() {
 		this.allPossibleMoves = null;
 		this.possibleMoves = null;
+		this.attacks = null;
+		this.draw = null;
 	}
 
 	void set(Coordinate coordinate, Piece piece) {
 		board.put(coordinate, piece);
+		updateCastlingRights();
 		resetCachedValues();
 	}
 
 	void addCastlingPiece(Piece piece) {
 		castlingPieces.add(piece);
+		updateCastlingRights();
 		resetCachedValues();
 	}
 
 	void setLastMove(Move move) {
-		this.performedMoves.add(move);
+		this.performedMoves.add(PackedMove.of(move));
 		resetCachedValues();
 	}
 
@@ -1,63 +1,109 @@
 package de.thohee.useless.chess.board;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
+/**
+ * The pieces on the board are kept as one bitboard per colour and figure plus
+ * the occupancy per colour. The array of pieces is kept as compatibility view,
+ * since callers identify pieces (e.g. castling pieces) by object identity.
+ */
 public class ChessBoard {
 
+	private static final int FIGURES = Figure.values().length;
+
 	private Piece[] chessboard = new Piece[64];
-	private int pieceCount = 0;
-	private Integer cachedHash = null;
+	private long[] bitboards = new long[2 * FIGURES];
+	private long[] occupancies = new long[2];
+	private long zobristKey = 0L;
 
 	public ChessBoard() {
 	}
 
 	public ChessBoard(ChessBoard other) {
 		this.chessboard = other.chessboard.clone();
-		this.pieceCount = other.pieceCount;
+		this.bitboards = other.bitboards.clone();
+		this.occupancies = other.occupancies.clone();
+		this.zobristKey = other.zobristKey;
+	}
+
+	private static int index(Colour colour, Figure figure) {
+		return colour.ordinal() * FIGURES + figure.ordinal();
 	}
 
 	public Piece get(Coordinate coordinate) {
 		return chessboard[coordinate.ordinal()];
 	}
 
+	public Piece get(int square) {
+		return chessboard[square];
+	}
+
 	public void put(Coordinate coordinate, Piece piece) {
-		if (chessboard[coordinate.ordinal()] == null) {
-			++pieceCount;
-		}
-		chessboard[coordinate.ordinal()] = piece;
-		cachedHash = null;
+		remove(coordinate);
+		final int square = coordinate.ordinal();
+		final long bit = Bitboards.bit(square);
+		final int index = index(piece.getColour(), piece.getFigure());
+		chessboard[square] = piece;
+		bitboards[index] |= bit;
+		occupancies[piece.getColour().ordinal()] |= bit;
+		zobristKey ^= Zobrist.piece(index, square);
 	}
 
 	public void remove(Coordinate coordinate) {
-		if (chessboard[coordinate.ordinal()] != null) {
-			--pieceCount;
+		final int square = coordinate.ordinal();
+		Piece piece = chessboard[square];
+		if (piece != null) {
+			final long bit = Bitboards.bit(square);
+			final int index = index(piece.getColour(), piece.getFigure());
+			bitboards[index] &= ~bit;
+			occupancies[piece.getColour().ordinal()] &= ~bit;
+			chessboard[square] = null;
+			zobristKey ^= Zobrist.piece(index, square);
 		}
-		chessboard[coordinate.ordinal()] = null;
-		cachedHash = null;
 	}
 
 	public int size() {
-		return pieceCount;
+		return Long.bitCount(getOccupancy());
+	}
+
+	public long getBitboard(Colour colour, Figure figure) {
+		return bitboards[index(colour, figure)];
+	}
+
+	public long getOccupancy(Colour colour) {
+		return occupancies[colour.ordinal()];
+	}
+
+	public long getOccupancy() {
+		return occupancies[0] | occupancies[1];
+	}
+
+	/**
+	 * @return the Zobrist key of the pieces on their squares, see {@link Zobrist}
+	 */
+	long getZobristKey() {
+		return zobristKey;
 	}
 
 	private static class AbstractIterator {
 
 		private Piece[] chessboard = null;
+		private long remainingSquares;
 		private int indexOfNextPiece = -1;
 
-		protected AbstractIterator(Piece[] chessboard) {
+		protected AbstractIterator(Piece[] chessboard, long occupancy) {
 			this.chessboard = chessboard;
-			moveToNext();
+			this.remainingSquares = occupancy;
 		}
 
-		protected void moveToNext() {
-			do {
-				++indexOfNextPiece;
-			} while (indexOfNextPiece < chessboard.length && chessboard[indexOfNextPiece] == null);
+		public boolean hasNext() {
+			return remainingSquares != 0L;
 		}
 
-		public boolean hasNext() {
-			return indexOfNextPiece < chessboard.length;
+		protected void moveToNext() {
+			indexOfNextPiece = Bitboards.first(remainingSquares);
+			remainingSquares = Bitboards.withoutFirst(remainingSquares);
 		}
 
 		protected Piece nextPiece() {
@@ -65,49 +111,47 @@ public class ChessBoard {
 		}
 
 		protected Coordinate nextCoordinate() {
-			return Coordinate.values()[indexOfNextPiece];
+			return Coordinate.get(indexOfNextPiece);
 		}
 
 	}
 
 	private static class PieceIterator extends AbstractIterator implements Iterator<Piece> {
 
-		protected PieceIterator(Piece[] chessBoard) {
-			super(chessBoard);
+		protected PieceIterator(Piece[] chessBoard, long occupancy) {
+			super(chessBoard, occupancy);
 		}
 
 		@Override
 		public Piece next() {
 			assert (hasNext());
-			Piece piece = nextPiece();
 			moveToNext();
-			return piece;
+			return nextPiece();
 		}
 
 	}
 
 	private static class PositionedPieceIterator extends AbstractIterator implements Iterator<PositionedPiece> {
 
-		protected PositionedPieceIterator(Piece[] chessBoard) {
-			super(chessBoard);
+		protected PositionedPieceIterator(Piece[] chessBoard, long occupancy) {
+			super(chessBoard, occupancy);
 		}
 
 		@Override
 		public PositionedPiece next() {
 			assert (hasNext());
-			PositionedPiece positionedPiece = new PositionedPiece(nextCoordinate(), nextPiece());
 			moveToNext();
-			return positionedPiece;
+			return new PositionedPiece(nextCoordinate(), nextPiece());
 		}
 
 	}
 
 	public Iterator<Piece> pieces() {
-		return new PieceIterator(this.chessboard);
+		return new PieceIterator(this.chessboard, getOccupancy());
 	}
 
 	public Iterator<PositionedPiece> positionedPieces() {
-		return new PositionedPieceIterator(this.chessboard);
+		return new PositionedPieceIterator(this.chessboard, getOccupancy());
 	}
 
 	@Override
@@ -116,21 +160,7 @@ public class ChessBoard {
 			return false;
 		} else if (obj instanceof ChessBoard) {
 			ChessBoard other = (ChessBoard) obj;
-			if (this.pieceCount != other.pieceCount) {
-				return false;
-			}
-			for (int i = 0; i < chessboard.length; ++i) {
-				Piece piece = chessboard[i];
-				Piece otherPiece = other.chessboard[i];
-				if (piece != null && otherPiece != null) {
-					if (piece.getFigure() != otherPiece.getFigure() || piece.getColour() != otherPiece.getColour()) {
-						return false;
-					}
-				} else if ((piece == null) != (otherPiece == null)) {
-					return false;
-				}
-			}
-			return true;
+			return Arrays.equals(this.bitboards, other.bitboards);
 		} else {
 			return false;
 		}
@@ -138,21 +168,7 @@ public class ChessBoard {
 
 	@Override
 	public int hashCode() {
-		if (cachedHash == null) {
-			final int prime = 31;
-			int hash = 1;
-			for (int i = 0; i < chessboard.length; ++i) {
-				Piece piece = chessboard[i];
-				if (piece != null) {
-					hash = hash * prime + i;
-					hash = hash * prime + piece.getFigure().ordinal() + 1;
-					hash = hash * prime + piece.getColour().ordinal() + 1;
-				}
-			}
-			hash += 100 * hash + pieceCount;
-			cachedHash = hash;
-		}
-		return cachedHash;
+		return Long.hashCode(zobristKey);
 	}
 
 }
@@ -78,13 +78,23 @@ public enum Coordinate {
 
 	// @formatter:on
 
+	private static final Coordinate[] coordinates = values();
+
 	private String name;
 	private int column;
 	private int row;
 
 	public static Coordinate get(int column, int row) {
 		assert (0 <= column && column < 8 && 0 <= row && row < 8);
-		return values()[column * 8 + row];
+		return coordinates[column * 8 + row];
+	}
+
+	/**
+	 * @param square index of the square as used by bitboards, i.e. the ordinal
+	 *               column * 8 + row
+	 */
+	public static Coordinate get(int square) {
+		return coordinates[square];
 	}
 
 	private Coordinate(String name, int column, int row) {
@@ -86,19 +86,48 @@ public class FENParser {
 		}
 	}
 
-	private static void setPossibleCastlings(String string, BoardPosition boardPosition) {
-		// TODO Auto-generated method stub
-
+	private static void setPossibleCastlings(String castlings, BoardPosition boardPosition) {
+		for (char c : castlings.toCharArray()) {
+			switch (c) {
+			case 'K':
+				addCastlingPieces(boardPosition, Coordinate.e1, Coordinate.h1);
+				break;
+			case 'Q':
+				addCastlingPieces(boardPosition, Coordinate.e1, Coordinate.a1);
+				break;
+			case 'k':
+				addCastlingPieces(boardPosition, Coordinate.e8, Coordinate.h8);
+				break;
+			case 'q':
+				addCastlingPieces(boardPosition, Coordinate.e8, Coordinate.a8);
+				break;
+			}
+		}
 	}
 
-	private static void setLastPawnMove(String string, BoardPosition boardPosition) {
-		// TODO Auto-generated method stub
-
+	private static void addCastlingPieces(BoardPosition boardPosition, Coordinate king, Coordinate rook) {
+		for (Coordinate coordinate : new Coordinate[] { king, rook }) {
+			Piece piece = boardPosition.get(coordinate);
+			if (piece != null) {
+				boardPosition.addCastlingPiece(piece);
+			}
+		}
 	}
 
-	private static void setNumberOfMovesWithoutPawnOrCapture(String string, BoardPosition boardPosition) {
-		// TODO Auto-generated method stub
+	private static void setLastPawnMove(String enPassantTarget, BoardPosition boardPosition) {
+		if (!"-".equals(enPassantTarget)) {
+			// the pawn of the other colour has just passed the target square
+			Coordinate passed = Coordinate.parse(enPassantTarget);
+			Colour colour = boardPosition.getColourToMove().opposite();
+			int step = colour.equals(Colour.White) ? 1 : -1;
+			boardPosition.setLastMove(new Move(colour, Figure.Pawn,
+					Coordinate.get(passed.getColumn(), passed.getRow() - step),
+					Coordinate.get(passed.getColumn(), passed.getRow() + step), Move.Capture.None));
+		}
+	}
 
+	private static void setNumberOfMovesWithoutPawnOrCapture(String field, BoardPosition boardPosition) {
+		boardPosition.setMovesWithoutPawnAndCapture(Integer.parseInt(field));
 	}
 
 	private static void setDepth(String field, BoardPosition boardPosition) {
@@ -0,0 +1,107 @@
+package de.thohee.useless.chess.board;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Lookup tables for the attacks of sliding pieces. The relevant occupancy of a
+ * square is multiplied by a magic number, which maps every occupancy to an
+ * index into the attack table of that square without destructive collisions.
+ * Since the squares are numbered column by column (see {@link Bitboards}), the
+ * well-known published magics do not apply. Instead the magics are searched
+ * once at class initialization with a fixed seed.
+ *
+ * @author Thomas
+ *
+ */
+public final class MagicBitboards {
+
+	private static final long SEED = 20200512L;
+
+	private static final long[] rookMasks = new long[64];
+	private static final long[] rookMagics = new long[64];
+	private static final int[] rookShifts = new int[64];
+	private static final long[][] rookTables = new long[64][];
+
+	private static final long[] bishopMasks = new long[64];
+	private static final long[] bishopMagics = new long[64];
+	private static final int[] bishopShifts = new int[64];
+	private static final long[][] bishopTables = new long[64][];
+
+	private static final long initializationNanos;
+
+	static {
+		final long starttime = System.nanoTime();
+		Random random = new Random(SEED);
+		for (int square = 0; square < 64; ++square) {
+			rookMasks[square] = Bitboards.rookOccupancyMask(square);
+			rookShifts[square] = 64 - Long.bitCount(rookMasks[square]);
+			rookTables[square] = new long[1 << Long.bitCount(rookMasks[square])];
+			rookMagics[square] = findMagic(square, rookMasks[square], rookShifts[square], rookTables[square], true,
+					random);
+			bishopMasks[square] = Bitboards.bishopOccupancyMask(square);
+			bishopShifts[square] = 64 - Long.bitCount(bishopMasks[square]);
+			bishopTables[square] = new long[1 << Long.bitCount(bishopMasks[square])];
+			bishopMagics[square] = findMagic(square, bishopMasks[square], bishopShifts[square], bishopTables[square],
+					false, random);
+		}
+		initializationNanos = System.nanoTime() - starttime;
+	}
+
+	private MagicBitboards() {
+	}
+
+	private static long findMagic(int square, long mask, int shift, long[] table, boolean rook, Random random) {
+		final int n = 1 << Long.bitCount(mask);
+		long[] occupancies = new long[n];
+		long[] attacks = new long[n];
+		// enumerate all subsets of the mask (carry-rippler)
+		long occupancy = 0L;
+		for (int i = 0; i < n; ++i) {
+			occupancies[i] = occupancy;
+			attacks[i] = rook ? Bitboards.computeRookAttacks(square, occupancy)
+					: Bitboards.computeBishopAttacks(square, occupancy);
+			occupancy = (occupancy - mask) & mask;
+		}
+		boolean[] used = new boolean[n];
+		while (true) {
+			// candidates with few set bits are much more likely to be magic
+			long magic = random.nextLong() & random.nextLong() & random.nextLong();
+			if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) {
+				continue;
+			}
+			Arrays.fill(used, false);
+			boolean collision = false;
+			for (int i = 0; i < n && !collision; ++i) {
+				int index = (int) ((occupancies[i] * magic) >>> shift);
+				if (!used[index]) {
+					used[index] = true;
+					table[index] = attacks[i];
+				} else if (table[index] != attacks[i]) {
+					collision = true;
+				}
+			}
+			if (!collision) {
+				return magic;
+			}
+		}
+	}
+
+	public static long rookAttacks(int square, long occupancy) {
+		return rookTables[square][(int) (((occupancy & rookMasks[square]) * rookMagics[square]) >>> rookShifts[square])];
+	}
+
+	public static long bishopAttacks(int square, long occupancy) {
+		return bishopTables[square][(int) (((occupancy & bishopMasks[square]) * bishopMagics[square])
+				>>> bishopShifts[square])];
+	}
+
+	/**
+	 * @return time spent on searching the magics and filling the tables when the
+	 *         class was initialized
+	 */
+	public static long getInitializationMillis() {
+		return initializationNanos / 1_000_000L;
+	}
+
+}
@@ -0,0 +1,113 @@
+package de.thohee.useless.chess.board;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Growing list of moves encoded as {@link PackedMove}, backed by an int array.
+ *
+ * @author Thomas
+ *
+ */
+public final class MoveList {
+
+	private int[] moves;
+	private int size = 0;
+
+	public MoveList() {
+		this(64);
+	}
+
+	public MoveList(int capacity) {
+		this.moves = new int[Math.max(capacity, 1)];
+	}
+
+	public MoveList(MoveList other) {
+		this.moves = Arrays.copyOf(other.moves, Math.max(other.size, 1));
+		this.size = other.size;
+	}
+
+	public void add(int move) {
+		if (size == moves.length) {
+			moves = Arrays.copyOf(moves, 2 * moves.length);
+		}
+		moves[size++] = move;
+	}
+
+	public int get(int index) {
+		assert (index < size);
+		return moves[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return the last move or {@link PackedMove#NONE} if the list is empty
+	 */
+	public int last() {
+		return size > 0 ? moves[size - 1] : PackedMove.NONE;
+	}
+
+	public int removeLast() {
+		assert (size > 0);
+		return moves[--size];
+	}
+
+	public boolean contains(int move) {
+		for (int i = 0; i < size; ++i) {
+			if (moves[i] == move) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sorts the moves by descending score. Moves with equal score keep their
+	 * order.
+	 */
+	public void sort(IntUnaryOperator score) {
+		int[] scores = new int[size];
+		for (int i = 0; i < size; ++i) {
+			scores[i] = score.applyAsInt(moves[i]);
+		}
+		// insertion sort is stable and fast enough for the short lists of moves
+		for (int i = 1; i < size; ++i) {
+			final int move = moves[i];
+			final int moveScore = scores[i];
+			int j = i - 1;
+			while (j >= 0 && scores[j] < moveScore) {
+				moves[j + 1] = moves[j];
+				scores[j + 1] = scores[j];
+				--j;
+			}
+			moves[j + 1] = move;
+			scores[j + 1] = moveScore;
+		}
+	}
+
+	/**
+	 * @return the moves as objects, only to be used at the boundaries of the
+	 *         engine
+	 */
+	public List<Move> toMoves() {
+		List<Move> result = new ArrayList<>(size);
+		for (int i = 0; i < size; ++i) {
+			result.add(PackedMove.toMove(moves[i]));
+		}
+		return result;
+	}
+
+}
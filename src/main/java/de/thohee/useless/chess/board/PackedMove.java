@@ -0,0 +1,155 @@
+package de.thohee.useless.chess.board;
+
+import de.thohee.useless.chess.board.Move.Capture;
+import de.thohee.useless.chess.board.Move.Castling;
+
+/**
+ * Encoding of a {@link Move} in a single int, which is used by the move
+ * generator and the search in order to avoid allocating an object per move.
+ * 
+ * <pre>
+ * bits  0..5  from square (see {@link Bitboards})
+ * bits  6..11 to square
+ * bits 12..14 figure
+ * bits 15..16 capture
+ * bits 17..19 new figure + 1 or 0 if no promotion
+ * bits 20..21 castling + 1 or 0 if no castling
+ * bit  22     colour
+ * bit  23     null move, i.e. only the colour passes the turn
+ * </pre>
+ * 
+ * Castlings are encoded as the move of the king. Since no move goes from a
+ * square to the same square, 0 can be used as {@link #NONE}.
+ *
+ * @author Thomas
+ *
+ */
+public final class PackedMove {
+
+	public static final int NONE = 0;
+
+	private static final int TO_SHIFT = 6;
+	private static final int FIGURE_SHIFT = 12;
+	private static final int CAPTURE_SHIFT = 15;
+	private static final int NEW_FIGURE_SHIFT = 17;
+	private static final int CASTLING_SHIFT = 20;
+	private static final int COLOUR_SHIFT = 22;
+	private static final int NULL_MOVE = 1 << 23;
+
+	private static final Figure[] figures = Figure.values();
+	private static final Capture[] captures = Capture.values();
+	private static final Castling[] castlings = Castling.values();
+	private static final Colour[] colours = Colour.values();
+
+	private PackedMove() {
+	}
+
+	public static int of(Colour colour, Figure figure, int from, int to, Capture capture) {
+		return from | (to << TO_SHIFT) | (figure.ordinal() << FIGURE_SHIFT) | (capture.ordinal() << CAPTURE_SHIFT)
+				| (colour.ordinal() << COLOUR_SHIFT);
+	}
+
+	public static int of(Colour colour, int from, int to, Capture capture, Figure newFigure) {
+		return of(colour, Figure.Pawn, from, to, capture) | ((newFigure.ordinal() + 1) << NEW_FIGURE_SHIFT);
+	}
+
+	public static int of(Colour colour, Castling castling) {
+		final int row = colour == Colour.White ? 0 : 7;
+		final int toColumn = castling == Castling.KingSide ? 6 : 2;
+		return of(colour, Figure.King, Bitboards.square(4, row), Bitboards.square(toColumn, row), Capture.None)
+				| ((castling.ordinal() + 1) << CASTLING_SHIFT);
+	}
+
+	public static int of(Move move) {
+		if (move.getCastling() != null) {
+			return of(move.getColour(), move.getCastling());
+		} else if (move.getNewFigure() != null) {
+			return of(move.getColour(), move.getFrom().ordinal(), move.getTo().ordinal(), move.getCapture(),
+					move.getNewFigure());
+		} else {
+			return of(move.getColour(), move.getFigure(), move.getFrom().ordinal(), move.getTo().ordinal(),
+					move.getCapture());
+		}
+	}
+
+	/**
+	 * @return the move by which the given colour passes the turn, which is only
+	 *         used by the search
+	 */
+	public static int nullMove(Colour colour) {
+		return NULL_MOVE | (colour.ordinal() << COLOUR_SHIFT);
+	}
+
+	public static boolean isNullMove(int move) {
+		return (move & NULL_MOVE) != 0;
+	}
+
+	public static Move toMove(int move) {
+		if (isCastling(move)) {
+			return new Move(getColour(move), getCastling(move));
+		} else if (isPromotion(move)) {
+			return new Move(getColour(move), Figure.Pawn, Coordinate.get(getFrom(move)), Coordinate.get(getTo(move)),
+					getCapture(move), getNewFigure(move));
+		} else {
+			return new Move(getColour(move), getFigure(move), Coordinate.get(getFrom(move)),
+					Coordinate.get(getTo(move)), getCapture(move));
+		}
+	}
+
+	public static int getFrom(int move) {
+		return move & 0x3F;
+	}
+
+	public static int getTo(int move) {
+		return (move >>> TO_SHIFT) & 0x3F;
+	}
+
+	public static Figure getFigure(int move) {
+		return figures[(move >>> FIGURE_SHIFT) & 0x7];
+	}
+
+	public static Capture getCapture(int move) {
+		return captures[(move >>> CAPTURE_SHIFT) & 0x3];
+	}
+
+	public static boolean isCapture(int move) {
+		return ((move >>> CAPTURE_SHIFT) & 0x3) != 0;
+	}
+
+	public static boolean isPromotion(int move) {
+		return ((move >>> NEW_FIGURE_SHIFT) & 0x7) != 0;
+	}
+
+	/**
+	 * @return the figure a pawn is promoted to or null
+	 */
+	public static Figure getNewFigure(int move) {
+		final int newFigure = (move >>> NEW_FIGURE_SHIFT) & 0x7;
+		return newFigure != 0 ? figures[newFigure - 1] : null;
+	}
+
+	public static boolean isCastling(int move) {
+		return ((move >>> CASTLING_SHIFT) & 0x3) != 0;
+	}
+
+	/**
+	 * @return the castling or null
+	 */
+	public static Castling getCastling(int move) {
+		final int castling = (move >>> CASTLING_SHIFT) & 0x3;
+		return castling != 0 ? castlings[castling - 1] : null;
+	}
+
+	public static Colour getColour(int move) {
+		return colours[(move >>> COLOUR_SHIFT) & 0x1];
+	}
+
+	public static String asUciMove(int move) {
+		return Coordinate.get(getFrom(move)).toString() + Coordinate.get(getTo(move)).toString();
+	}
+
+	public static String toString(int move) {
+		return toMove(move).toString();
+	}
+
+}
@@ -0,0 +1,274 @@
+package de.thohee.useless.chess.board;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the leaves of the game tree up to a given depth (performance test).
+ * The counts of the {@link ReferencePosition}s are well known, so this
+ * validates the move generation and measures its throughput at the same time.
+ *
+ * Usage: <code>Perft [-divide] [-threads n] [-hash mb] depth [fen]</code> or
+ * <code>Perft -reference depth</code>
+ *
+ * @author Thomas
+ *
+ */
+public class Perft {
+
+	public enum ReferencePosition {
+		Initial("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", 20L, 400L, 8902L, 197281L, 4865609L,
+				119060324L),
+		Kiwipete("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 48L, 2039L, 97862L, 4085603L,
+				193690690L),
+		Position3("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 14L, 191L, 2812L, 43238L, 674624L, 11030083L),
+		Position4("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 6L, 264L, 9467L, 422333L,
+				15833292L),
+		Position5("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 44L, 1486L, 62379L, 2103487L, 89941194L),
+		Position6("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", 46L, 2079L, 89890L,
+				3894594L, 164075551L);
+
+		private final String fen;
+		private final long[] nodes;
+
+		private ReferencePosition(String fen, long... nodes) {
+			this.fen = fen;
+			this.nodes = nodes;
+		}
+
+		public String getFen() {
+			return fen;
+		}
+
+		public BoardPosition createPosition() {
+			return FENParser.parse(fen);
+		}
+
+		public int getMaxDepth() {
+			return nodes.length;
+		}
+
+		public long getNodes(int depth) {
+			return nodes[depth - 1];
+		}
+	}
+
+	/**
+	 * Remembers the number of leaves below a position for a remaining depth.
+	 * Entries are stored as key xor count, so that an entry torn by concurrent
+	 * writes is not mistaken for a hit.
+	 */
+	private static class HashTable {
+
+		private final long[] keys;
+		private final long[] counts;
+		private final int mask;
+
+		HashTable(int sizeInMB) {
+			// two longs per entry
+			int entries = Integer.highestOneBit(Math.max(1, (int) Math.min(1L << 30, (sizeInMB * 1024L * 1024L) / 16)));
+			keys = new long[entries];
+			counts = new long[entries];
+			mask = entries - 1;
+		}
+
+		private static long key(long zobristHash, int depth) {
+			return zobristHash ^ (depth * 0x9E3779B97F4A7C15L);
+		}
+
+		long get(long zobristHash, int depth) {
+			final long key = key(zobristHash, depth);
+			final int index = (int) key & mask;
+			final long count = counts[index];
+			return (keys[index] ^ count) == key ? count : -1L;
+		}
+
+		void put(long zobristHash, int depth, long count) {
+			final long key = key(zobristHash, depth);
+			final int index = (int) key & mask;
+			keys[index] = key ^ count;
+			counts[index] = count;
+		}
+	}
+
+	private final int threads;
+	private final HashTable hashTable;
+
+	public Perft() {
+		this(1, 0);
+	}
+
+	/**
+	 * @param threads    the number of threads the root moves are distributed to
+	 * @param hashSizeInMB the size of the table of already counted subtrees or 0
+	 *                     to count every subtree
+	 */
+	public Perft(int threads, int hashSizeInMB) {
+		assert (threads >= 1 && hashSizeInMB >= 0);
+		this.threads = threads;
+		this.hashTable = hashSizeInMB > 0 ? new HashTable(hashSizeInMB) : null;
+	}
+
+	/**
+	 * @return the number of leaves of the game tree of the given depth
+	 */
+	public long perft(BoardPosition boardPosition, int depth) {
+		if (depth == 0) {
+			return 1L;
+		}
+		long nodes = 0L;
+		for (long n : divide(boardPosition, depth).values()) {
+			nodes += n;
+		}
+		return nodes;
+	}
+
+	/**
+	 * @return the number of leaves per root move in the order of generation
+	 */
+	public Map<Move, Long> divide(BoardPosition boardPosition, int depth) {
+		assert (depth >= 1);
+		MoveList moves = boardPosition.getLegalPackedMoves();
+		List<RecursiveTask<Long>> tasks = new ArrayList<>(moves.size());
+		for (int i = 0; i < moves.size(); ++i) {
+			final int move = moves.get(i);
+			tasks.add(new RecursiveTask<Long>() {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Long compute() {
+					BoardPosition searchPosition = boardPosition.createSearchPosition();
+					searchPosition.makeMove(move);
+					return count(searchPosition, depth - 1);
+				}
+			});
+		}
+		if (threads > 1) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				for (RecursiveTask<Long> task : tasks) {
+					pool.execute(task);
+				}
+			} finally {
+				pool.shutdown();
+			}
+		} else {
+			for (RecursiveTask<Long> task : tasks) {
+				task.invoke();
+			}
+		}
+		Map<Move, Long> result = new LinkedHashMap<>();
+		for (int i = 0; i < moves.size(); ++i) {
+			result.put(PackedMove.toMove(moves.get(i)), tasks.get(i).join());
+		}
+		return result;
+	}
+
+	private long count(BoardPosition searchPosition, int depth) {
+		if (depth == 0) {
+			return 1L;
+		}
+		MoveList moves = searchPosition.getLegalPackedMoves();
+		if (depth == 1) {
+			// no need to perform the moves to count them
+			return moves.size();
+		}
+		final long zobristHash = hashTable != null ? searchPosition.getZobristHash() : 0L;
+		if (hashTable != null) {
+			final long nodes = hashTable.get(zobristHash, depth);
+			if (nodes >= 0L) {
+				return nodes;
+			}
+		}
+		long nodes = 0L;
+		for (int i = 0; i < moves.size(); ++i) {
+			searchPosition.makeMove(moves.get(i));
+			nodes += count(searchPosition, depth - 1);
+			searchPosition.unmakeMove();
+		}
+		if (hashTable != null) {
+			hashTable.put(zobristHash, depth, nodes);
+		}
+		return nodes;
+	}
+
+	private static String formatSpeed(long nodes, long nanos) {
+		return (nanos / 1_000_000L) + "ms, " + (nanos > 0 ? nodes * 1_000_000_000L / nanos : 0L) + " nodes/s";
+	}
+
+	public static void main(String[] args) {
+		try {
+			boolean divide = false;
+			boolean reference = false;
+			int threads = 1;
+			int hashSizeInMB = 0;
+			int o = 0;
+			while (o < args.length && args[o].startsWith("-")) {
+				switch (args[o]) {
+				case "-divide":
+					divide = true;
+					break;
+				case "-reference":
+					reference = true;
+					break;
+				case "-threads":
+					threads = Integer.parseInt(args[++o]);
+					break;
+				case "-hash":
+					hashSizeInMB = Integer.parseInt(args[++o]);
+					break;
+				default:
+					throw new IllegalArgumentException("unknown option " + args[o]);
+				}
+				++o;
+			}
+			if (o >= args.length) {
+				throw new IllegalArgumentException(
+						"usage: Perft [-divide] [-threads n] [-hash mb] depth [fen] | Perft -reference depth");
+			}
+			final int depth = Integer.parseInt(args[o++]);
+			Perft perft = new Perft(threads, hashSizeInMB);
+			if (reference) {
+				for (ReferencePosition referencePosition : ReferencePosition.values()) {
+					for (int d = 1; d <= Math.min(depth, referencePosition.getMaxDepth()); ++d) {
+						final long starttime = System.nanoTime();
+						final long nodes = perft.perft(referencePosition.createPosition(), d);
+						final long nanos = System.nanoTime() - starttime;
+						final long expected = referencePosition.getNodes(d);
+						System.out.println(referencePosition + " depth " + d + ": " + nodes
+								+ (nodes == expected ? " ok" : " expected " + expected) + ", " + formatSpeed(nodes, nanos));
+					}
+				}
+				return;
+			}
+			StringBuilder fen = new StringBuilder();
+			while (o < args.length) {
+				fen.append(fen.length() > 0 ? " " : "").append(args[o++]);
+			}
+			BoardPosition boardPosition = fen.length() > 0 ? FENParser.parse(fen.toString())
+					: BoardPosition.getInitialPosition();
+			final long starttime = System.nanoTime();
+			long nodes = 0L;
+			if (divide) {
+				for (Map.Entry<Move, Long> entry : perft.divide(boardPosition, depth).entrySet()) {
+					System.out.println(entry.getKey().asUciMove() + ": " + entry.getValue());
+					nodes += entry.getValue();
+				}
+				System.out.println();
+			} else {
+				nodes = perft.perft(boardPosition, depth);
+			}
+			final long nanos = System.nanoTime() - starttime;
+			System.out.println("Nodes searched: " + nodes);
+			System.out.println(formatSpeed(nodes, nanos));
+		} catch (Throwable e) {
+			System.err.println(e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,156 @@
+package de.thohee.useless.chess.board;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Static exchange evaluation (SEE): the material balance of the sequence of
+ * captures on a single square, in which both sides capture with their least
+ * valuable piece and may stop as soon as continuing would lose material. Long
+ * range pieces behind the capturing pieces (x-rays) join the exchange as soon
+ * as their line opens. Pins are ignored.
+ *
+ * An instance keeps its swap list, so that an evaluation does not allocate
+ * anything, but it must not be shared by several threads.
+ *
+ * @author Thomas
+ *
+ */
+public class StaticExchange {
+
+	private static final Figure[] figures = Figure.values();
+
+	// there are at most 32 pieces to capture each other
+	private final int[] gains = new int[32];
+
+	private final int[] values;
+
+	// the figures by ascending value, the king last
+	private final Figure[] attackerOrder;
+
+	// the square of the last found least valuable attacker
+	private int attackerSquare = 0;
+
+	/**
+	 * @param values the value of each figure, indexed by {@link Figure#ordinal()},
+	 *               where the value of the king does not matter
+	 */
+	public StaticExchange(int[] values) {
+		assert (values.length == figures.length);
+		this.values = values.clone();
+		this.attackerOrder = figures.clone();
+		Arrays.sort(this.attackerOrder,
+				Comparator.comparingInt(f -> f == Figure.King ? Integer.MAX_VALUE : this.values[f.ordinal()]));
+	}
+
+	/**
+	 * @return the material the side to move wins (if positive) or loses (if
+	 *         negative) by performing the given move and the following
+	 *         exchange on its target square
+	 */
+	public int evaluate(BoardPosition boardPosition, int move) {
+		final int from = PackedMove.getFrom(move);
+		final int to = PackedMove.getTo(move);
+		long occupancy = boardPosition.getOccupancy() ^ Bitboards.bit(from);
+		int gain = 0;
+		switch (PackedMove.getCapture(move)) {
+		case Regular:
+			gain = values[boardPosition.get(Coordinate.get(to)).getFigure().ordinal()];
+			break;
+		case EnPassant:
+			gain = values[Figure.Pawn.ordinal()];
+			// the captured pawn may have blocked a line to the target square
+			occupancy ^= Bitboards.bit(Bitboards.square(Bitboards.column(to), Bitboards.row(from)));
+			break;
+		default:
+			break;
+		}
+		Figure figure = PackedMove.getFigure(move);
+		final Figure newFigure = PackedMove.getNewFigure(move);
+		if (newFigure != null) {
+			gain += values[newFigure.ordinal()] - values[figure.ordinal()];
+			figure = newFigure;
+		}
+		return swap(boardPosition, to, occupancy, PackedMove.getColour(move).opposite(), gain, figure);
+	}
+
+	/**
+	 * @return the material the given colour wins by starting an exchange on the
+	 *         given square with its least valuable attacker, which may be
+	 *         negative, or 0 if it cannot capture there
+	 */
+	public int evaluate(BoardPosition boardPosition, int square, Colour colour) {
+		long occupancy = boardPosition.getOccupancy();
+		final Figure attacker = findLeastValuableAttacker(boardPosition, square, colour, occupancy);
+		if (attacker == null) {
+			return 0;
+		}
+		final int gain = values[boardPosition.get(Coordinate.get(square)).getFigure().ordinal()];
+		return swap(boardPosition, square, occupancy ^ Bitboards.bit(attackerSquare), colour.opposite(), gain,
+				attacker);
+	}
+
+	/**
+	 * Plays the exchange on the square after the first capture.
+	 *
+	 * @param occupancy the occupancy after the first capture
+	 * @param side      the colour to capture next
+	 * @param gain      the material won by the first capture
+	 * @param figure    the figure which performed the first capture
+	 */
+	private int swap(BoardPosition boardPosition, int square, long occupancy, Colour side, int gain, Figure figure) {
+		int d = 0;
+		gains[0] = gain;
+		while (true) {
+			final Figure attacker = findLeastValuableAttacker(boardPosition, square, side, occupancy);
+			if (attacker == null) {
+				break;
+			}
+			++d;
+			// what the side wins if the exchange ended with this capture
+			gains[d] = values[figure.ordinal()] - gains[d - 1];
+			if (Math.max(-gains[d - 1], gains[d]) < 0) {
+				// the capture loses material in any case and does not change the result
+				--d;
+				break;
+			}
+			occupancy ^= Bitboards.bit(attackerSquare);
+			figure = attacker;
+			side = side.opposite();
+		}
+		// each side stops the exchange where it is best for itself
+		while (d > 0) {
+			gains[d - 1] = -Math.max(-gains[d - 1], gains[d]);
+			--d;
+		}
+		return gains[0];
+	}
+
+	/**
+	 * @return the least valuable figure of the given colour, which attacks the
+	 *         square given the occupancy, or null. Its square is remembered in
+	 *         {@link #attackerSquare}.
+	 */
+	private Figure findLeastValuableAttacker(BoardPosition boardPosition, int square, Colour colour, long occupancy) {
+		// sliding pieces behind removed pieces are found, since the attacks are
+		// computed from the remaining occupancy
+		final long attackers = boardPosition.attackersTo(square, colour, occupancy) & occupancy;
+		if (attackers == 0L) {
+			return null;
+		}
+		for (Figure figure : attackerOrder) {
+			final long candidates = attackers & boardPosition.getBitboard(colour, figure);
+			if (candidates != 0L) {
+				if (figure == Figure.King
+						&& (boardPosition.attackersTo(square, colour.opposite(), occupancy) & occupancy) != 0L) {
+					// the king cannot capture a protected piece
+					return null;
+				}
+				attackerSquare = Bitboards.first(candidates);
+				return figure;
+			}
+		}
+		return null;
+	}
+
+}
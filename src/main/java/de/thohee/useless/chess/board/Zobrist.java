@@ -0,0 +1,80 @@
+package de.thohee.useless.chess.board;
+
+import java.util.Random;
+
+/**
+ * Random keys for 64 bit Zobrist hashing of positions. The hash of a position
+ * is the exclusive or of the keys of all pieces on their squares, the side to
+ * move, the castling rights and the column of a possible en passant capture.
+ * Since XOR is its own inverse, the hash can be updated incrementally when a
+ * piece is put on or removed from a square.
+ *
+ * @author Thomas
+ *
+ */
+final class Zobrist {
+
+	private static final long SEED = 20200517L;
+
+	static final int WHITE_KING_SIDE = 1;
+	static final int WHITE_QUEEN_SIDE = 2;
+	static final int BLACK_KING_SIDE = 4;
+	static final int BLACK_QUEEN_SIDE = 8;
+
+	private static final long[][] pieces = new long[2 * Figure.values().length][64];
+	private static final long[] castlingRights = new long[16];
+	private static final long[] enPassantColumns = new long[8];
+	private static final long blackToMove;
+
+	static {
+		Random random = new Random(SEED);
+		for (long[] keys : pieces) {
+			for (int square = 0; square < 64; ++square) {
+				keys[square] = random.nextLong();
+			}
+		}
+		long[] singleRights = new long[4];
+		for (int i = 0; i < 4; ++i) {
+			singleRights[i] = random.nextLong();
+		}
+		for (int rights = 0; rights < 16; ++rights) {
+			for (int i = 0; i < 4; ++i) {
+				if ((rights & (1 << i)) != 0) {
+					castlingRights[rights] ^= singleRights[i];
+				}
+			}
+		}
+		for (int column = 0; column < 8; ++column) {
+			enPassantColumns[column] = random.nextLong();
+		}
+		blackToMove = random.nextLong();
+	}
+
+	private Zobrist() {
+	}
+
+	/**
+	 * @param index colour and figure as indexed by {@link ChessBoard}
+	 */
+	static long piece(int index, int square) {
+		return pieces[index][square];
+	}
+
+	/**
+	 * @param rights combination of {@link #WHITE_KING_SIDE},
+	 *               {@link #WHITE_QUEEN_SIDE}, {@link #BLACK_KING_SIDE} and
+	 *               {@link #BLACK_QUEEN_SIDE}
+	 */
+	static long castlingRights(int rights) {
+		return castlingRights[rights];
+	}
+
+	static long enPassant(int column) {
+		return enPassantColumns[column];
+	}
+
+	static long sideToMove(Colour colour) {
+		return colour == Colour.Black ? blackToMove : 0L;
+	}
+
+}
@@ -2,18 +2,33 @@ package de.thohee.useless.chess.player;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import de.thohee.useless.chess.board.BoardPosition;
 import de.thohee.useless.chess.board.Colour;
+import de.thohee.useless.chess.board.Figure;
 import de.thohee.useless.chess.board.Move;
+import de.thohee.useless.chess.board.MoveList;
+import de.thohee.useless.chess.board.PackedMove;
+import de.thohee.useless.chess.player.TranspositionTable.Bound;
+import de.thohee.useless.chess.player.TranspositionTable.Probe;
 
 /**
  * Simple generic minimax-player with alpha-beta-pruning
@@ -29,6 +44,8 @@ public abstract class MinimaxPlayer extends EnginePlayer {
 
 	private TranspositionTable transpositionTable = null;
 
+	private final Probe probe = new Probe();
+
 	private AtomicBoolean stop = new AtomicBoolean(false);
 
 	private Integer maxDepth = null;
@@ -38,6 +55,142 @@ public abstract class MinimaxPlayer extends EnginePlayer {
 
 	private long visitedNodes = 0L;
 
+	// the stop flag and the clock are polled every pollInterval nodes, which
+	// follows the speed of the search, so that the polls are about
+	// STOP_POLL_NANOS apart
+	static final long STOP_POLL_NANOS = 2_000_000L;
+	static final int MIN_POLL_INTERVAL = 64;
+	private static final int MAX_POLL_INTERVAL = 1 << 20;
+
+	private int pollInterval = MIN_POLL_INTERVAL;
+	private int nodesUntilPoll = MIN_POLL_INTERVAL;
+	private long lastPollNanos = 0L;
+
+	// when the search was asked to stop or ran out of time, or 0
+	private volatile long stopNanos = 0L;
+
+	private Long stopLatencyNanos = null;
+
+	private int rootPly = 0;
+
+	// quiet moves which caused a cutoff, of this search thread
+	private final MoveHistory moveHistory = new MoveHistory();
+
+	// the depth of the first iteration of the iterative deepening
+	private int firstDepth = 1;
+
+	// the depth of the last iteration, which the transposition table can still
+	// tell from shallower ones
+	static final int MAX_DEPTH = TranspositionTable.MAX_DEPTH;
+
+	// whether the current iteration depends on a node at or near its horizon, or
+	// else the tree is resolved and a deeper iteration would find the same
+	private boolean horizonReached = false;
+
+	// the principal variation of the latest completed iteration, which the next
+	// one searches first
+	private int[] principalVariation = new int[0];
+
+	// the principal variations below the game states of each depth of the current
+	// iteration (triangular table)
+	private int[][] principalVariations = new int[0][];
+	private int[] principalVariationLengths = new int[0];
+
+	// the values of the root moves of the current and of the latest completed
+	// iteration, which orders the root moves of the next one
+	private Map<Integer, Value> rootMoveValues = new HashMap<>();
+	private Map<Integer, Value> previousRootMoveValues = new HashMap<>();
+
+	private boolean principalVariationSearch = true;
+
+	private boolean nullMovePruning = true;
+
+	// the depth, by which the search after passing the turn is reduced, in
+	// addition to the ply of the null move itself
+	private static final int NULL_MOVE_REDUCTION = 2;
+
+	private boolean lateMoveReductions = true;
+
+	// the number of moves of a game state, which are never reduced
+	private static final int LATE_MOVE_REDUCTION_MOVES = 3;
+
+	// the reduction of a late quiet move by draft and move number, which grows
+	// slowly with both
+	private static final int[][] LATE_MOVE_REDUCTIONS = new int[64][64];
+
+	static {
+		for (int draft = 1; draft < 64; ++draft) {
+			for (int moveNumber = 1; moveNumber < 64; ++moveNumber) {
+				LATE_MOVE_REDUCTIONS[draft][moveNumber] = (int) (0.75 + Math.log(draft) * Math.log(moveNumber) / 2.25);
+			}
+		}
+	}
+
+	private boolean frontierPruning = true;
+
+	// the maximum draft of a frontier node, whose cheap static evaluation is
+	// compared to the window before searching it
+	static final int FRONTIER_DRAFT = 3;
+
+	// by draft 1 to FRONTIER_DRAFT, in the units of shift(): how much a quiet move
+	// may gain at most (futility), the opponent may gain at most (reverse
+	// futility) and the side to move may gain by tactics (razoring)
+	private int[] futilityMargins = { 1, 2, 4 };
+	private int[] reverseFutilityMargins = { 1, 2, 4 };
+	private int[] razoringMargins = { 2, 3, 5 };
+
+	// the margin of delta pruning in the units of shift(), for the positional
+	// gain a capture may bring in addition to the material
+	private static final int DELTA_MARGIN = 2;
+
+	// the number of plies beyond the horizon, in which all moves are searched in
+	// check, so that checks in a row cannot extend the quiescence search without
+	// limit
+	private static final int QUIESCENCE_CHECK_PLIES = 4;
+
+	// the initial distance of the bounds of an aspiration window to the value of
+	// the previous iteration, doubled with each failure up to the maximum
+	private static final int ASPIRATION_DELTA = 1;
+	private static final int MAX_ASPIRATION_DELTA = 8;
+
+	private long aspirationFailLows = 0L;
+	private long aspirationFailHighs = 0L;
+
+	/**
+	 * How the helper threads take part in the search.
+	 */
+	public enum ParallelSearch {
+		// the helpers search the whole tree, sharing nothing but the transposition
+		// table
+		LazySMP,
+		// the root moves are distributed among the threads, sharing alpha
+		RootSplit,
+		// idle threads help with the remaining successors of any node deep enough,
+		// once its first successor has been searched (young brothers wait)
+		YBWC
+	}
+
+	// the minimum remaining depth of a node to be split
+	private static final int MIN_SPLIT_DEPTH = 2;
+
+	private ParallelSearch parallelSearch = ParallelSearch.LazySMP;
+
+	// players searching in parallel, each with its own search state
+	private List<MinimaxPlayer> helpers = new ArrayList<>();
+
+	private ExecutorService helperExecutor = null;
+
+	private boolean helper = false;
+
+	// the helpers waiting to be assigned to a split point, shared with the helpers
+	private ConcurrentLinkedQueue<MinimaxPlayer> idleHelpers = null;
+
+	// the split point this player currently searches for
+	private SplitPoint splitPoint = null;
+
+	// the split points this player opened during the last search
+	private long splitPoints = 0L;
+
 	public MinimaxPlayer(Colour colour, boolean useTranspositionTable) {
 		super(colour);
 		if (useTranspositionTable) {
@@ -55,36 +208,268 @@ public abstract class MinimaxPlayer extends EnginePlayer {
 		this.debug = true;
 	}
 
+	/**
+	 * Lets the given number of threads search each move, see
+	 * {@link ParallelSearch}. With {@link ParallelSearch#LazySMP} the helper
+	 * threads only fill the transposition table, while the result of the calling
+	 * thread is taken, so without transposition table the search stays single
+	 * threaded.
+	 */
+	public void setThreads(int threads) {
+		assert (threads >= 1 && !helper);
+		if (helperExecutor != null) {
+			helperExecutor.shutdownNow();
+			helperExecutor = null;
+		}
+		helpers = new ArrayList<>();
+		for (int i = 1; i < threads; ++i) {
+			MinimaxPlayer helper = createHelper();
+			if (helper == null) {
+				break;
+			}
+			helper.transpositionTable = this.transpositionTable;
+			helper.helper = true;
+			// half of the helpers keeps one ply ahead of the other half
+			helper.firstDepth = this.firstDepth + i % 2;
+			// the helpers split nodes of their own, so they search like this player
+			helper.parallelSearch = this.parallelSearch;
+			helper.principalVariationSearch = this.principalVariationSearch;
+			helper.nullMovePruning = this.nullMovePruning;
+			helper.lateMoveReductions = this.lateMoveReductions;
+			helper.frontierPruning = this.frontierPruning;
+			helper.futilityMargins = this.futilityMargins;
+			helper.reverseFutilityMargins = this.reverseFutilityMargins;
+			helper.razoringMargins = this.razoringMargins;
+			helpers.add(helper);
+		}
+		if (!helpers.isEmpty()) {
+			helperExecutor = new ForkJoinPool(helpers.size());
+			idleHelpers = new ConcurrentLinkedQueue<>();
+			for (MinimaxPlayer helper : helpers) {
+				helper.helperExecutor = this.helperExecutor;
+				helper.idleHelpers = this.idleHelpers;
+			}
+		}
+	}
+
+	public int getThreads() {
+		return 1 + helpers.size();
+	}
+
+	public void setParallelSearch(ParallelSearch parallelSearch) {
+		this.parallelSearch = parallelSearch;
+		for (MinimaxPlayer helper : helpers) {
+			helper.parallelSearch = parallelSearch;
+		}
+	}
+
+	void setPrincipalVariationSearch(boolean principalVariationSearch) {
+		this.principalVariationSearch = principalVariationSearch;
+		for (MinimaxPlayer helper : helpers) {
+			helper.principalVariationSearch = principalVariationSearch;
+		}
+	}
+
+	void setNullMovePruning(boolean nullMovePruning) {
+		this.nullMovePruning = nullMovePruning;
+		for (MinimaxPlayer helper : helpers) {
+			helper.nullMovePruning = nullMovePruning;
+		}
+	}
+
+	void setLateMoveReductions(boolean lateMoveReductions) {
+		this.lateMoveReductions = lateMoveReductions;
+		for (MinimaxPlayer helper : helpers) {
+			helper.lateMoveReductions = lateMoveReductions;
+		}
+	}
+
+	void setFrontierPruning(boolean frontierPruning) {
+		this.frontierPruning = frontierPruning;
+		for (MinimaxPlayer helper : helpers) {
+			helper.frontierPruning = frontierPruning;
+		}
+	}
+
+	/**
+	 * Sets the margins of frontier pruning for the drafts 1 to
+	 * {@link #FRONTIER_DRAFT} in the units of {@link #shift(Value, int)}. Smaller
+	 * margins prune more, but may miss more.
+	 */
+	public void setFrontierMargins(int[] futilityMargins, int[] reverseFutilityMargins, int[] razoringMargins) {
+		assert (futilityMargins.length == FRONTIER_DRAFT && reverseFutilityMargins.length == FRONTIER_DRAFT
+				&& razoringMargins.length == FRONTIER_DRAFT);
+		this.futilityMargins = futilityMargins.clone();
+		this.reverseFutilityMargins = reverseFutilityMargins.clone();
+		this.razoringMargins = razoringMargins.clone();
+		for (MinimaxPlayer helper : helpers) {
+			helper.futilityMargins = this.futilityMargins;
+			helper.reverseFutilityMargins = this.reverseFutilityMargins;
+			helper.razoringMargins = this.razoringMargins;
+		}
+	}
+
+	/**
+	 * @return the number of game states visited by this thread during the last
+	 *         search
+	 */
+	public long getVisitedNodes() {
+		return visitedNodes;
+	}
+
+	/**
+	 * @return how often the value of an iteration was below its aspiration window
+	 *         during the last search
+	 */
+	public long getAspirationFailLows() {
+		return aspirationFailLows;
+	}
+
+	/**
+	 * @return how often the value of an iteration was above its aspiration window
+	 *         during the last search
+	 */
+	public long getAspirationFailHighs() {
+		return aspirationFailHighs;
+	}
+
+	/**
+	 * @return the number of split points, which the helpers opened during the last
+	 *         search, nested in split points of this player
+	 */
+	long getHelperSplitPoints() {
+		long helperSplitPoints = 0L;
+		for (MinimaxPlayer helper : helpers) {
+			helperSplitPoints += helper.splitPoints;
+		}
+		return helperSplitPoints;
+	}
+
+	/**
+	 * @return a new player of the same kind to search in a helper thread or null
+	 *         if parallel search is not supported
+	 */
+	protected MinimaxPlayer createHelper() {
+		return null;
+	}
+
+	/**
+	 * All game states of a search share the same search position, which is
+	 * modified in place when entering and leaving a state.
+	 */
 	protected class GameState {
 
-		private BoardPosition boardPosition;
+		private final BoardPosition boardPosition;
 
-		private int depth = 0;
+		private final int move;
+
+		private final int depth;
+
+		// the plies skipped on the way from the root by searching with reduced depth
+		private final int reduction;
+
+		// the reduced search of this game state, which verifies a null move cutoff
+		private boolean verification = false;
+
+		// whether the moves from the root follow the previous principal variation
+		private boolean principal = false;
 
 		private Value value = null;
 
+		private int hashMove = PackedMove.NONE;
+
 		public GameState(BoardPosition boardPosition) {
+			this(boardPosition, PackedMove.NONE, 0, 0);
+			this.principal = true;
+		}
+
+		private GameState(BoardPosition boardPosition, int move, int depth, int reduction) {
+			assert (boardPosition.isSearchPosition());
 			this.boardPosition = boardPosition;
+			this.move = move;
+			this.depth = depth;
+			this.reduction = reduction;
 		}
 
-		protected GameState createSuccessorState(Move move) {
-			GameState successor = new GameState(this.boardPosition.justPerformMove(move));
-			successor.depth = this.depth + 1;
+		protected GameState createSuccessorState(int move) {
+			GameState successor = new GameState(this.boardPosition, move, this.depth + 1, this.reduction);
+			successor.principal = this.principal && this.depth < principalVariation.length
+					&& principalVariation[this.depth] == move;
 			return successor;
 		}
 
+		private GameState createNullMoveState(int reduction) {
+			return new GameState(this.boardPosition, PackedMove.nullMove(boardPosition.getColourToMove()),
+					this.depth + 1, this.reduction + reduction);
+		}
+
+		private GameState createReducedState(int reduction) {
+			GameState reducedState = new GameState(this.boardPosition, this.move, this.depth,
+					this.reduction + reduction);
+			reducedState.principal = this.principal;
+			return reducedState;
+		}
+
+		private GameState createVerificationState(int reduction) {
+			GameState verificationState = new GameState(this.boardPosition, this.move, this.depth,
+					this.reduction + reduction);
+			verificationState.verification = true;
+			return verificationState;
+		}
+
+		void enter() {
+			boardPosition.makeMove(move);
+		}
+
+		void leave() {
+			boardPosition.unmakeMove();
+		}
+
+		/**
+		 * @return the search position, which reflects this game state only while it
+		 *         is entered
+		 */
 		public BoardPosition getBoardPosition() {
 			return boardPosition;
 		}
 
+		/**
+		 * @return the move leading to this game state, see {@link PackedMove}
+		 */
+		public int getPackedMove() {
+			return move;
+		}
+
+		/**
+		 * @return the move leading to this game state or null for the root
+		 */
+		public Move getMove() {
+			return move != PackedMove.NONE ? PackedMove.toMove(move) : null;
+		}
+
 		public int getDepth() {
 			return depth;
 		}
 
+		/**
+		 * @return the depth of the search below this game state
+		 */
+		private int getDraft() {
+			return getMaxDepth() - depth - reduction;
+		}
+
 		public Value getValue() {
 			return value;
 		}
 
+		/**
+		 * @return the best move found for this game state in a previous search or
+		 *         {@link PackedMove#NONE}
+		 */
+		public int getHashMove() {
+			return hashMove;
+		}
+
 		public void setValue(Value value) {
 			this.value = value;
 		}
@@ -97,14 +482,7 @@ public abstract class MinimaxPlayer extends EnginePlayer {
 			// sorted by descending value
 			int cmp = gameState2.getValue().compareTo(gameState1.getValue());
 			if (cmp == 0) {
-				cmp = gameState1.getBoardPosition().hashCode() - gameState2.getBoardPosition().hashCode();
-				if (cmp == 0) {
-					if (gameState1.getBoardPosition().equals(gameState2.getBoardPosition())) {
-						return 0;
-					} else {
-						return System.identityHashCode(gameState1) - System.identityHashCode(gameState2);
-					}
-				}
+				cmp = Integer.compare(gameState1.getPackedMove(), gameState2.getPackedMove());
 			}
 			return cmp;
 		}
@@ -126,26 +504,146 @@ public abstract class MinimaxPlayer extends EnginePlayer {
 
 	@Override
 	public void stop() {
+		if (stopNanos == 0L) {
+			stopNanos = System.nanoTime();
+		}
 		stop.set(true);
+		for (MinimaxPlayer helper : helpers) {
+			helper.stop();
+		}
 	}
 
 	protected void checkStop() throws InterruptedException {
+		if (splitPoint != null && splitPoint.isCancelled()) {
+			throw new InterruptedException();
+		}
+		if (--nodesUntilPoll <= 0) {
+			pollStop();
+		}
+	}
+
+	private void pollStop() throws InterruptedException {
+		final long now = System.nanoTime();
+		if (lastPollNanos != 0L) {
+			// the number of nodes visited in the desired time between two polls,
+			// smoothed with the current interval
+			final long interval = pollInterval * STOP_POLL_NANOS / Math.max(1L, now - lastPollNanos);
+			pollInterval = (int) Math.max(MIN_POLL_INTERVAL, Math.min(MAX_POLL_INTERVAL, (pollInterval + interval) / 2));
+		}
+		lastPollNanos = now;
+		nodesUntilPoll = pollInterval;
 		if (stop.get()) {
 			throw new InterruptedException();
 		}
 		if (maxMillis != null && starttime != null) {
 			long elapsedTime = System.currentTimeMillis() - starttime;
 			if (elapsedTime >= maxMillis - 50) {
+				if (stopNanos == 0L) {
+					// the latency counts from the deadline
+					stopNanos = now - (elapsedTime - (maxMillis - 50)) * 1_000_000L;
+				}
 				writeLine("break after " + Long.toString(elapsedTime) + "ms");
 				throw new InterruptedException();
 			}
 		}
 	}
 
+	/**
+	 * @return the time in nanoseconds from the request to stop the last search or
+	 *         from its deadline until its move was returned, or null if it was not
+	 *         stopped
+	 */
+	public Long getStopLatencyNanos() {
+		return stopLatencyNanos;
+	}
+
+	/**
+	 * @return the number of nodes between two polls of the stop flag and the clock,
+	 *         as adapted to the speed of the latest search
+	 */
+	int getPollInterval() {
+		return pollInterval;
+	}
+
+	private void resetSearchState(BoardPosition boardPosition) {
+		this.visitedNodes = 0L;
+		// the first poll starts the measurement, the interval of the previous search
+		// is kept as a guess
+		this.nodesUntilPoll = MIN_POLL_INTERVAL;
+		this.lastPollNanos = 0L;
+		this.stopLatencyNanos = null;
+		this.aspirationFailLows = 0L;
+		this.aspirationFailHighs = 0L;
+		this.splitPoints = 0L;
+		evaluatedMoves.clear();
+		moveHistory.age();
+		this.principalVariation = new int[0];
+		this.rootMoveValues.clear();
+		this.previousRootMoveValues.clear();
+		this.rootPly = boardPosition.getPerformedMoves().size();
+	}
+
+	private List<Future<Move>> startHelpers(BoardPosition boardPosition) {
+		List<Future<Move>> helperSearches = new ArrayList<>(helpers.size());
+		if (helpers.isEmpty()) {
+			return helperSearches;
+		}
+		// the moves of the root are analyzed once, before the position is shared
+		boardPosition.getPossibleMoves();
+		if (parallelSearch != ParallelSearch.LazySMP) {
+			idleHelpers.clear();
+			for (MinimaxPlayer helper : helpers) {
+				helper.stop.set(false);
+				helper.maxMillis = this.maxMillis;
+				helper.starttime = this.starttime;
+				helper.resetSearchState(boardPosition);
+				if (parallelSearch == ParallelSearch.YBWC) {
+					idleHelpers.add(helper);
+				}
+			}
+			return helperSearches;
+		} else if (transpositionTable == null) {
+			return helperSearches;
+		}
+		Params params = new Params();
+		params.infinite = true;
+		for (MinimaxPlayer helper : helpers) {
+			helper.stop.set(false);
+			helperSearches.add(helperExecutor.submit(() -> helper.makeMove(boardPosition, params)));
+		}
+		return helperSearches;
+	}
+
+	private void stopHelpers(List<Future<Move>> helperSearches) {
+		if (helpers.isEmpty()) {
+			return;
+		}
+		for (MinimaxPlayer helper : helpers) {
+			helper.stop();
+		}
+		long helperNodes = 0L;
+		for (int i = 0; i < helperSearches.size(); ++i) {
+			try {
+				helperSearches.get(i).get();
+			} catch (ExecutionException e) {
+				writeLine("helper failed: " + e.getCause());
+			} catch (java.lang.InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (MinimaxPlayer helper : helpers) {
+			helperNodes += helper.visitedNodes;
+		}
+		writeLine("#visited nodes of helpers: " + helperNodes);
+	}
+
 	@Override
 	public Move makeMove(BoardPosition boardPosition, Params params) {
-		this.visitedNodes = 0L;
-		this.stop.set(false);
+		if (!helper) {
+			// a helper is stopped by its main player, even before it starts
+			this.stopNanos = 0L;
+			this.stop.set(false);
+		}
 		this.maxDepth = null;
 		this.maxMillis = null;
 		this.starttime = System.currentTimeMillis();
@@ -158,166 +656,983 @@ public abstract class MinimaxPlayer extends EnginePlayer {
 			this.maxDepth = null;
 			this.maxMillis = null;
 		}
-		if (transpositionTable != null) {
-			transpositionTable.clear();
+		if (transpositionTable != null && !helper) {
+			// the entries of previous moves are kept, but replaced first
+			transpositionTable.newSearch();
 		}
-		evaluatedMoves.clear();
-		GameState root = new GameState(boardPosition);
+		previouslyEvaluatedMoves = null;
+		resetSearchState(boardPosition);
+		GameState root = new GameState(boardPosition.createSearchPosition());
+		List<Future<Move>> helperSearches = startHelpers(boardPosition);
 		try {
 			if (this.maxDepth != null) {
-				maxValue(root, getMin(), getMax());
+				searchRoot(root, boardPosition, getMin(), getMax());
+				principalVariation = extractPrincipalVariation();
 			} else {
-				this.maxDepth = 3;
+				this.maxDepth = firstDepth;
+				Value value = null;
 				while (true) {
 					writeLine("maxDepth = " + maxDepth);
-					maxValue(root, getMin(), getMax());
+					horizonReached = false;
+					value = searchRootWithAspirationWindow(root, boardPosition, value);
 					previouslyEvaluatedMoves = new ArrayList<>(evaluatedMoves);
 					evaluatedMoves.clear();
-					if (transpositionTable != null) {
-						transpositionTable.clear();
+					// the values of this iteration are too shallow for the next one, but its
+					// principal variation and the order of its root moves are tried first
+					principalVariation = extractPrincipalVariation();
+					previousRootMoveValues = rootMoveValues;
+					rootMoveValues = new HashMap<>();
+					if (maxDepth >= MAX_DEPTH || isResolved(value)) {
+						writeLine("resolved at maxDepth = " + maxDepth);
+						break;
+					}
+					maxDepth += 1;
+				}
+				if (params.infinite && !helper) {
+					// the move must not be returned before the search is asked to stop
+					try {
+						while (!stop.get()) {
+							Thread.sleep(1L);
+						}
+					} catch (java.lang.InterruptedException e) {
+						Thread.currentThread().interrupt();
 					}
-					maxDepth += 2;
 				}
 			}
 		} catch (InterruptedException e) {
+		} finally {
+			stopHelpers(helperSearches);
 		}
 		writeLine("#visited nodes: " + visitedNodes);
 		if (transpositionTable != null) {
 			writeLine("#cache hits:      " + transpositionTable.getCacheHits());
 			writeLine("#cache misses:    " + transpositionTable.getCacheMisses());
-			transpositionTable.clear();
 		}
+		writeLine("#aspiration fail lows:  " + aspirationFailLows);
+		writeLine("#aspiration fail highs: " + aspirationFailHighs);
+		Move move;
 		if (previouslyEvaluatedMoves != null && !previouslyEvaluatedMoves.isEmpty()) {
 			writeLine("returning best choice of previous max depth");
-			return selectMove(previouslyEvaluatedMoves.iterator());
+			move = selectMove(previouslyEvaluatedMoves.iterator());
 		} else if (!evaluatedMoves.isEmpty()) {
 			writeLine("returning best choice of current max depth");
-			return selectMove(evaluatedMoves.iterator());
+			move = selectMove(evaluatedMoves.iterator());
 		} else {
 			writeLine("returning first possible move");
-			return boardPosition.getPossibleMoves().iterator().next();
+			move = boardPosition.getPossibleMoves().iterator().next();
+		}
+		final long stopped = stopNanos;
+		if (stopped != 0L) {
+			stopLatencyNanos = System.nanoTime() - stopped;
+			writeLine("#stop latency: " + stopLatencyNanos / 1000L + "us");
 		}
+		return move;
 	}
 
 	protected abstract Move selectMove(Iterator<GameState> evalutatedGameStates);
 
-	private static Value min(Value a, Value b) {
-		return a.compareTo(b) < 0 ? a : b;
+	/**
+	 * @return true if the value of the root is a win or a loss, or if no node of
+	 *         the iteration was cut off at the horizon, so that deeper iterations
+	 *         would not change the result
+	 */
+	private boolean isResolved(Value value) {
+		if (value.isMin() || value.isMax()) {
+			return true;
+		}
+		// the helpers of a split search the parts of the tree, which this player
+		// does not see
+		return !horizonReached && (helpers.isEmpty() || parallelSearch == ParallelSearch.LazySMP);
 	}
 
-	private static Value max(Value a, Value b) {
-		return a.compareTo(b) > 0 ? a : b;
+	/**
+	 * @return true if the search of a worker was interrupted, which the fork/join
+	 *         pool may have wrapped into runtime exceptions
+	 */
+	private static boolean isInterruption(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof InterruptedException) {
+				return true;
+			}
+		}
+		return false;
 	}
 
-	private boolean terminalTest(GameState gameState) {
-		return (getMaxDepth() != null && gameState.getDepth() >= getMaxDepth())
-				|| gameState.getBoardPosition().isDrawDisregardingStalemateAndThreeFoldRepetition()
-				|| gameState.getBoardPosition().getAllPossibleMoves().isEmpty() || (getCutoffDepth() != null
-						&& gameState.getDepth() >= getCutoffDepth() && isQuiescent(gameState.getBoardPosition()));
+	/**
+	 * @return the value the given number of units below (negative delta) or above
+	 *         the given one, where a unit is a small advantage like a pawn, or null
+	 *         if values cannot be shifted. This bounds aspiration windows and the
+	 *         margins of frontier pruning.
+	 */
+	protected Value shift(Value value, int delta) {
+		return null;
+	}
+
+	private Value getAspirationBound(Value value, int delta, Value unbounded) {
+		if (value == null || value.isInvalid() || value.isMin() || value.isMax()
+				|| Math.abs(delta) > MAX_ASPIRATION_DELTA) {
+			return unbounded;
+		}
+		final Value bound = shift(value, delta);
+		return bound != null ? bound : unbounded;
+	}
+
+	/**
+	 * Searches the root with a narrow window around the value of the previous
+	 * iteration first, which is widened on the side the value falls out of.
+	 */
+	private Value searchRootWithAspirationWindow(GameState root, BoardPosition boardPosition, Value previousValue)
+			throws InterruptedException {
+		int lowerDelta = ASPIRATION_DELTA;
+		int upperDelta = ASPIRATION_DELTA;
+		while (true) {
+			final Value alpha = getAspirationBound(previousValue, -lowerDelta, getMin());
+			final Value beta = getAspirationBound(previousValue, upperDelta, getMax());
+			// the values of the root moves outside of the window are only bounds
+			evaluatedMoves.clear();
+			final Value value = searchRoot(root, boardPosition, alpha, beta);
+			if (!alpha.isMin() && value.compareTo(alpha) <= 0) {
+				++aspirationFailLows;
+				lowerDelta *= 2;
+			} else if (!beta.isMax() && value.compareTo(beta) >= 0) {
+				++aspirationFailHighs;
+				upperDelta *= 2;
+			} else {
+				return value;
+			}
+		}
+	}
+
+	private Value searchRoot(GameState root, BoardPosition boardPosition, Value alpha, Value beta)
+			throws InterruptedException {
+		if (parallelSearch == ParallelSearch.RootSplit && !helpers.isEmpty()) {
+			return splitRoot(root, boardPosition, alpha, beta);
+		}
+		return negamax(root, alpha, beta);
 	}
 
-	private Value maxValue(GameState gameState, Value alpha, Value beta) throws InterruptedException {
+	/**
+	 * Searches the root moves until the first valid one with the full window and
+	 * then distributes the remaining ones among this player and its helpers. Each
+	 * improvement of alpha is published to all of them, so that the windows of
+	 * the moves searched later get tighter.
+	 */
+	private Value splitRoot(GameState root, BoardPosition boardPosition, Value alpha0, Value beta)
+			throws InterruptedException {
+		if (terminalTest(root)) {
+			return negamax(root, alpha0, beta);
+		}
 		++visitedNodes;
 		checkStop();
-		BoardPosition.Key key = gameState.getBoardPosition().getKey();
-		Value result = transpositionTable != null ? transpositionTable.get(key) : null;
-		if (result == null) {
-			if (gameState.getBoardPosition().isStillCheck()) {
-				// disallowed state
-				result = getInvalid();
-				assert (result != null);
-			} else if (terminalTest(gameState)) {
-				result = evaluate(gameState.getBoardPosition());
-				if (debug) {
-					result.setBoardPosition(gameState.getBoardPosition());
+		clearPrincipalVariation(0);
+		final long key = root.getBoardPosition().getKey();
+		if (transpositionTable != null && transpositionTable.find(key, probe)) {
+			root.hashMove = probe.getBestMove();
+		}
+		Value v = getMin();
+		int bestMove = PackedMove.NONE;
+		Iterator<GameState> successors = getRootSuccessors(root).iterator();
+		while (bestMove == PackedMove.NONE && successors.hasNext()) {
+			GameState successor = successors.next();
+			final Value m = searchSuccessor(successor, alpha0, beta, false);
+			recordRootMove(successor, m, alpha0);
+			if (!m.isInvalid()) {
+				v = m;
+				bestMove = successor.getPackedMove();
+				updatePrincipalVariation(0, bestMove);
+			}
+		}
+		List<Integer> moves = new ArrayList<>();
+		while (successors.hasNext()) {
+			moves.add(successors.next().getPackedMove());
+		}
+		if (bestMove == PackedMove.NONE) {
+			// we are actually in a terminal state
+			return evaluate(root.getBoardPosition());
+		}
+		if (!moves.isEmpty() && v.compareTo(beta) < 0) {
+			final AtomicReference<Value> alpha = new AtomicReference<>(max(alpha0, v));
+			final AtomicInteger next = new AtomicInteger(0);
+			final Value[] values = new Value[moves.size()];
+			List<Future<?>> workers = new ArrayList<>(helpers.size());
+			for (MinimaxPlayer helper : helpers) {
+				helper.maxDepth = this.maxDepth;
+				workers.add(helperExecutor.submit(() -> {
+					GameState helperRoot = helper.new GameState(boardPosition.createSearchPosition());
+					helper.searchRootMoves(helperRoot, moves, next, alpha, beta, values);
+					return null;
+				}));
+			}
+			InterruptedException interrupted = null;
+			try {
+				searchRootMoves(root, moves, next, alpha, beta, values);
+			} catch (InterruptedException e) {
+				interrupted = e;
+				for (MinimaxPlayer helper : helpers) {
+					helper.stop();
 				}
-			} else {
-				Value v = getMin();
-				boolean atLeastOneValid = false;
-				for (GameState successor : getSuccessors(gameState)) {
-					Value m = minValue(successor, alpha, beta);
-					if (m.isInvalid()) {
-						continue;
-					}
-					atLeastOneValid = true;
-					v = max(v, m);
-					alpha = max(alpha, v);
-					if (alpha.compareTo(beta) >= 0) {
-						// minimizer already has a better or equally bad option
-						// no use to look for an even better alternative
-						break;
-					} else if (v.isMax()) {
-						// can't get better
-						break;
+			}
+			for (Future<?> worker : workers) {
+				try {
+					worker.get();
+				} catch (ExecutionException e) {
+					if (isInterruption(e)) {
+						interrupted = new InterruptedException();
+					} else {
+						throw new RuntimeException(e.getCause());
 					}
+				} catch (java.lang.InterruptedException e) {
+					Thread.currentThread().interrupt();
+					interrupted = new InterruptedException();
 				}
-				if (atLeastOneValid) {
-					result = v;
+			}
+			for (MinimaxPlayer helper : helpers) {
+				evaluatedMoves.addAll(helper.evaluatedMoves);
+				helper.evaluatedMoves.clear();
+				rootMoveValues.putAll(helper.rootMoveValues);
+				helper.rootMoveValues.clear();
+			}
+			if (interrupted != null) {
+				throw interrupted;
+			}
+			for (int i = 0; i < values.length; ++i) {
+				if (values[i] != null && !values[i].isInvalid() && values[i].compareTo(v) > 0) {
+					v = values[i];
+					bestMove = moves.get(i);
+					// the variation below may have been found by a helper
+					principalVariationLengths[1] = 0;
+					updatePrincipalVariation(0, bestMove);
+				}
+			}
+		}
+		if (transpositionTable != null) {
+			transpositionTable.put(key, getMaxDepth(), getBound(v, alpha0, beta), v, bestMove);
+		}
+		return v;
+	}
+
+	private void searchRootMoves(GameState root, List<Integer> moves, AtomicInteger next,
+			AtomicReference<Value> alpha, Value beta, Value[] values) throws InterruptedException {
+		for (int i = next.getAndIncrement(); i < moves.size(); i = next.getAndIncrement()) {
+			final Value a = alpha.get();
+			if (a.compareTo(beta) >= 0) {
+				// can't get better
+				break;
+			}
+			final GameState successor = root.createSuccessorState(moves.get(i));
+			final Value m = searchSuccessor(successor, a, beta, true);
+			recordRootMove(successor, m, a);
+			values[i] = m;
+			if (!m.isInvalid()) {
+				alpha.accumulateAndGet(m, MinimaxPlayer::max);
+			}
+		}
+	}
+
+	/**
+	 * A node, whose remaining successors are searched by several players. They
+	 * share the window and narrow it with each value found, a cutoff cancels the
+	 * searches of all of them.
+	 */
+	private static class SplitPoint {
+
+		private final SplitPoint parent;
+		private final MoveList moves;
+		// the number of moves of the game state searched before the split
+		private final int searchedMoves;
+		private final AtomicInteger next = new AtomicInteger(0);
+		private volatile boolean cancelled = false;
+
+		// guarded by this
+		private Value alpha;
+		private Value beta;
+		private Value value;
+		private int bestMove;
+		private int cutoffMove = PackedMove.NONE;
+
+		SplitPoint(SplitPoint parent, MoveList moves, int searchedMoves, Value alpha, Value beta, Value value,
+				int bestMove) {
+			this.parent = parent;
+			this.moves = moves;
+			this.searchedMoves = searchedMoves;
+			this.alpha = alpha;
+			this.beta = beta;
+			this.value = value;
+			this.bestMove = bestMove;
+		}
+
+		boolean isCancelled() {
+			return cancelled || (parent != null && parent.isCancelled());
+		}
+
+		synchronized Value getAlpha() {
+			return alpha;
+		}
+
+		synchronized Value getBeta() {
+			return beta;
+		}
+
+		synchronized void update(Value m, int move) {
+			if (m.isInvalid()) {
+				return;
+			}
+			if (m.compareTo(value) > 0) {
+				value = m;
+				bestMove = move;
+			}
+			alpha = max(alpha, value);
+			if (cutoffMove == PackedMove.NONE && (alpha.compareTo(beta) >= 0 || value.isMax())) {
+				cutoffMove = move;
+				cancelled = true;
+			}
+		}
+	}
+
+	private boolean canSplit(GameState gameState) {
+		return parallelSearch == ParallelSearch.YBWC && idleHelpers != null && !idleHelpers.isEmpty()
+				&& gameState.getDepth() > 0 && gameState.getDraft() >= MIN_SPLIT_DEPTH;
+	}
+
+	/**
+	 * Searches the remaining successors of the game state together with the idle
+	 * helpers.
+	 */
+	private SplitPoint split(GameState gameState, Iterator<GameState> successors, int searchedMoves, Value alpha,
+			Value beta, Value value, int bestMove) throws InterruptedException {
+		MoveList remainingMoves = new MoveList();
+		while (successors.hasNext()) {
+			remainingMoves.add(successors.next().getPackedMove());
+		}
+		final SplitPoint splitPoint = new SplitPoint(this.splitPoint, remainingMoves, searchedMoves, alpha, beta,
+				value, bestMove);
+		++splitPoints;
+		List<Future<?>> workers = new ArrayList<>();
+		for (int i = 1; i < remainingMoves.size(); ++i) {
+			final MinimaxPlayer helper = idleHelpers.poll();
+			if (helper == null) {
+				break;
+			}
+			helper.maxDepth = this.maxDepth;
+			final BoardPosition boardPosition = gameState.getBoardPosition().createSearchPosition();
+			final int depth = gameState.getDepth();
+			final int reduction = gameState.reduction;
+			workers.add(helperExecutor.submit(() -> {
+				try {
+					helper.splitPoint = splitPoint;
+					helper.searchSplitPoint(splitPoint, helper.new GameState(boardPosition, PackedMove.NONE, depth, reduction));
+				} finally {
+					helper.splitPoint = null;
+					idleHelpers.add(helper);
+				}
+				return null;
+			}));
+		}
+		final SplitPoint parent = this.splitPoint;
+		boolean interrupted = false;
+		this.splitPoint = splitPoint;
+		try {
+			searchSplitPoint(splitPoint, gameState);
+		} catch (InterruptedException e) {
+			interrupted = true;
+		} finally {
+			this.splitPoint = parent;
+		}
+		for (Future<?> worker : workers) {
+			try {
+				worker.get();
+			} catch (ExecutionException e) {
+				if (isInterruption(e)) {
+					interrupted = true;
 				} else {
-					// we are actually in a terminal state
-					result = evaluate(gameState.getBoardPosition());
+					throw new RuntimeException(e.getCause());
 				}
+			} catch (java.lang.InterruptedException e) {
+				Thread.currentThread().interrupt();
+				interrupted = true;
 			}
-			if (transpositionTable != null) {
-				transpositionTable.put(key, result);
+		}
+		checkStop();
+		if (interrupted && splitPoint.cutoffMove == PackedMove.NONE) {
+			// the value is incomplete
+			throw new InterruptedException();
+		}
+		return splitPoint;
+	}
+
+	private void searchSplitPoint(SplitPoint splitPoint, GameState gameState) throws InterruptedException {
+		for (int i = splitPoint.next.getAndIncrement(); i < splitPoint.moves.size()
+				&& !splitPoint.isCancelled(); i = splitPoint.next.getAndIncrement()) {
+			GameState successor = gameState.createSuccessorState(splitPoint.moves.get(i));
+			final Value m = searchSuccessor(successor, splitPoint.getAlpha(), splitPoint.getBeta(), true,
+					getLateMoveReduction(gameState, successor.getPackedMove(), splitPoint.searchedMoves + i + 1));
+			splitPoint.update(m, successor.getPackedMove());
+		}
+	}
+
+	/**
+	 * Searches the successor with the full window or else first with a null
+	 * window, which only tells whether it is better than alpha, and again with the
+	 * full window only if it is (principal variation search).
+	 *
+	 * @return the value of the successor from the perspective of the side to move
+	 *         before it
+	 */
+	private Value searchSuccessor(GameState successor, Value alpha, Value beta, boolean nullWindow)
+			throws InterruptedException {
+		return searchSuccessor(successor, alpha, beta, nullWindow, 0);
+	}
+
+	/**
+	 * Searches a late move first with reduced depth and a null window. Only if it
+	 * turns out better than alpha, it is searched again as usual.
+	 *
+	 * @param reduction the plies, by which the successor may be reduced, unless it
+	 *                  gives check
+	 */
+	private Value searchSuccessor(GameState successor, Value alpha, Value beta, boolean nullWindow, int reduction)
+			throws InterruptedException {
+		successor.enter();
+		try {
+			if (reduction > 0 && !alpha.isMin() && !successor.getBoardPosition().isCheck()) {
+				final Value m = negamax(successor.createReducedState(reduction), alpha.next().negate(),
+						alpha.negate()).negate();
+				if (m.isInvalid() || m.compareTo(alpha) <= 0) {
+					return m;
+				}
+			}
+			if (nullWindow && principalVariationSearch && !alpha.isMin()) {
+				final Value m = negamax(successor, alpha.next().negate(), alpha.negate()).negate();
+				if (m.isInvalid() || m.compareTo(alpha) <= 0 || m.compareTo(beta) >= 0) {
+					return m;
+				}
 			}
+			return negamax(successor, beta.negate(), alpha.negate()).negate();
+		} finally {
+			successor.leave();
 		}
-		return result;
 	}
 
-	private Value minValue(GameState gameState, Value alpha, Value beta) throws InterruptedException {
+	/**
+	 * @param moveNumber the position of the move in the order of the successors,
+	 *                   starting with 1
+	 * @return the plies, by which the search of the move may be reduced, which is
+	 *         more for late moves and less for moves with a good history
+	 */
+	private int getLateMoveReduction(GameState gameState, int move, int moveNumber) {
+		final int draft = gameState.getDraft();
+		if (!lateMoveReductions || gameState.getDepth() == 0 || moveNumber <= LATE_MOVE_REDUCTION_MOVES || draft < 3
+				|| !MoveHistory.isQuiet(move) || gameState.getBoardPosition().isCheck()) {
+			return 0;
+		}
+		int reduction = LATE_MOVE_REDUCTIONS[Math.min(draft, 63)][Math.min(moveNumber, 63)];
+		if (moveHistory.getScore(move) >= draft * draft) {
+			// the move caused cutoffs at this draft elsewhere
+			--reduction;
+		}
+		// the reduced search must not end before the successor
+		return Math.max(0, Math.min(reduction, draft - 2));
+	}
+
+	/**
+	 * Passing the turn is never better than the best move, except in zugzwang,
+	 * which is unlikely as long as the side to move has other pieces than pawns.
+	 */
+	private boolean canPassTurn(GameState gameState, Value beta) {
+		if (!nullMovePruning || gameState.getDepth() == 0 || gameState.verification
+				|| PackedMove.isNullMove(gameState.getPackedMove()) || gameState.getDraft() <= NULL_MOVE_REDUCTION
+				|| beta.isMax()) {
+			return false;
+		}
+		final BoardPosition boardPosition = gameState.getBoardPosition();
+		final Colour colour = boardPosition.getColourToMove();
+		final long pieces = boardPosition.getOccupancy(colour)
+				& ~(boardPosition.getBitboard(colour, Figure.Pawn) | boardPosition.getBitboard(colour, Figure.King));
+		if (pieces == 0L || boardPosition.isStillCheck() || boardPosition.isCheck() || terminalTest(gameState)) {
+			return false;
+		}
+		// only worth a try, if the side to move is ahead already
+		final Value staticValue = evaluateCheaplyForSideToMove(boardPosition);
+		return staticValue == null || staticValue.compareTo(beta) >= 0;
+	}
+
+	/**
+	 * Lets the opponent move twice in a row and searches with reduced depth. If
+	 * the opponent still cannot get below beta, the game state most probably fails
+	 * high as well. This is verified by a search of the game state itself with the
+	 * same reduction, which does not pass again, so that zugzwang is not
+	 * mistaken for a cutoff.
+	 *
+	 * @return a lower bound of the value of the game state, which is at least
+	 *         beta, or null if the game state has to be searched
+	 */
+	private Value searchNullMove(GameState gameState, Value beta) throws InterruptedException {
+		// both searches only tell whether the value is at least beta, i.e. above the
+		// greatest value below beta (null window)
+		final Value belowBeta = beta.negate().next().negate();
+		final Value m = searchSuccessor(gameState.createNullMoveState(NULL_MOVE_REDUCTION), belowBeta, beta, false);
+		if (m.isInvalid() || m.compareTo(beta) < 0) {
+			return null;
+		}
+		final Value v = negamax(gameState.createVerificationState(NULL_MOVE_REDUCTION), belowBeta, beta);
+		return !v.isInvalid() && v.compareTo(beta) >= 0 ? v : null;
+	}
+
+	/**
+	 * A node just above the horizon, which can hardly change the material balance
+	 * any more, unless it is in check.
+	 */
+	private boolean isFrontier(GameState gameState) {
+		final int draft = gameState.getDraft();
+		if (!frontierPruning || gameState.getDepth() == 0 || draft < 1 || draft > FRONTIER_DRAFT) {
+			return false;
+		}
+		final BoardPosition boardPosition = gameState.getBoardPosition();
+		return !boardPosition.isStillCheck() && !boardPosition.isCheck() && !terminalTest(gameState);
+	}
+
+	/**
+	 * Compares the static value of a frontier node to the window, before any of
+	 * its successors is searched: if it is above beta by more than the opponent
+	 * can gain (reverse futility), the node fails high. If it is below alpha by
+	 * more than the side to move can gain (razoring), only the quiescence search
+	 * may prove it wrong.
+	 *
+	 * @return a bound of the value of the game state outside of the window or
+	 *         null if the game state has to be searched
+	 */
+	private Value pruneFrontier(GameState gameState, Value staticValue, Value alpha, Value beta)
+			throws InterruptedException {
+		final int draft = gameState.getDraft();
+		final Value lowerBound = shift(staticValue, -reverseFutilityMargins[draft - 1]);
+		if (lowerBound != null && !beta.isMax() && lowerBound.compareTo(beta) >= 0) {
+			return lowerBound;
+		}
+		if (draft > 1) {
+			final Value upperBound = shift(staticValue, razoringMargins[draft - 1]);
+			if (upperBound != null && !alpha.isMin() && upperBound.compareTo(alpha) <= 0) {
+				final Value v = quiesce(gameState, alpha, beta, 0);
+				if (!v.isInvalid() && v.compareTo(alpha) <= 0) {
+					return v;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the value, above which a quiet move of the frontier node cannot get
+	 *         (futility), if that is not above alpha, or else null
+	 */
+	private Value getFutilityValue(GameState gameState, Value staticValue, Value alpha) {
+		final Value futilityValue = shift(staticValue, futilityMargins[gameState.getDraft() - 1]);
+		return futilityValue != null && !alpha.isMin() && futilityValue.compareTo(alpha) <= 0 ? futilityValue : null;
+	}
+
+	private static boolean givesCheck(GameState successor) {
+		successor.enter();
+		try {
+			return successor.getBoardPosition().isCheck();
+		} finally {
+			successor.leave();
+		}
+	}
+
+	private void recordRootMove(GameState successor, Value value, Value alpha) {
+		if (!value.isInvalid()) {
+			// even a bound tells how the move compares to the others
+			rootMoveValues.put(successor.getPackedMove(), value);
+		}
+		// we must only take the value for granted, if we did not prune possibly
+		// worse alternatives!
+		if (!value.isInvalid() && (value.isMin() || value.compareTo(alpha) > 0)) {
+			successor.setValue(value);
+			evaluatedMoves.add(successor);
+		}
+	}
+
+	/**
+	 * @return the killer moves, history scores and counter moves of this search
+	 *         thread
+	 */
+	MoveHistory getMoveHistory() {
+		return moveHistory;
+	}
+
+	private void storeCutoff(GameState gameState, int move) {
+		moveHistory.update(gameState.getDepth(), move, gameState.getBoardPosition().getLastPackedMove(),
+				gameState.getDraft());
+	}
+
+	/**
+	 * @return the successors of the root by descending values of the previous
+	 *         iteration, followed by the moves without one in the order of
+	 *         {@link #getSuccessors(GameState)}
+	 */
+	private Iterable<GameState> getRootSuccessors(GameState root) {
+		if (previousRootMoveValues.isEmpty()) {
+			return getSuccessors(root);
+		}
+		List<GameState> successors = new ArrayList<>();
+		getSuccessors(root).forEach(successors::add);
+		// the sort is stable
+		successors.sort((successor1, successor2) -> {
+			final Value value1 = previousRootMoveValues.get(successor1.getPackedMove());
+			final Value value2 = previousRootMoveValues.get(successor2.getPackedMove());
+			if (value1 == null || value2 == null) {
+				return value1 != null ? -1 : value2 != null ? 1 : 0;
+			}
+			return value2.compareTo(value1);
+		});
+		return successors;
+	}
+
+	/**
+	 * Forgets the principal variation below the game states of the given depth,
+	 * before they are searched.
+	 */
+	private void clearPrincipalVariation(int depth) {
+		if (depth + 1 >= principalVariationLengths.length) {
+			final int size = Math.max(64, 2 * (depth + 2));
+			principalVariations = Arrays.copyOf(principalVariations, size);
+			principalVariationLengths = Arrays.copyOf(principalVariationLengths, size);
+		}
+		principalVariationLengths[depth] = 0;
+		principalVariationLengths[depth + 1] = 0;
+	}
+
+	/**
+	 * Makes the move followed by the principal variation of its successor the
+	 * principal variation of the game states of the given depth.
+	 */
+	private void updatePrincipalVariation(int depth, int move) {
+		final int length = 1 + principalVariationLengths[depth + 1];
+		if (principalVariations[depth] == null || principalVariations[depth].length < length) {
+			principalVariations[depth] = new int[Math.max(length, 16)];
+		}
+		principalVariations[depth][0] = move;
+		if (length > 1) {
+			System.arraycopy(principalVariations[depth + 1], 0, principalVariations[depth], 1, length - 1);
+		}
+		principalVariationLengths[depth] = length;
+	}
+
+	private int[] extractPrincipalVariation() {
+		return principalVariationLengths.length > 0 && principalVariationLengths[0] > 0
+				? Arrays.copyOf(principalVariations[0], principalVariationLengths[0])
+				: new int[0];
+	}
+
+	/**
+	 * @return the principal variation of the latest completed search of the root
+	 */
+	int[] getPrincipalVariation() {
+		return principalVariation.clone();
+	}
+
+	/**
+	 * @return the successors of the game state in the order of the picked moves,
+	 *         each created only when it is actually visited
+	 */
+	Iterable<GameState> getSuccessors(GameState gameState, MovePicker movePicker) {
+		return () -> new Iterator<GameState>() {
+
+			private int nextMove = PackedMove.NONE;
+			private boolean picked = false;
+
+			@Override
+			public boolean hasNext() {
+				if (!picked) {
+					nextMove = movePicker.next();
+					picked = true;
+				}
+				return nextMove != PackedMove.NONE;
+			}
+
+			@Override
+			public GameState next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				picked = false;
+				return gameState.createSuccessorState(nextMove);
+			}
+		};
+	}
+
+	private static Value max(Value a, Value b) {
+		return a.compareTo(b) > 0 ? a : b;
+	}
+
+	/**
+	 * @return how the value found with the given window relates to the actual
+	 *         value
+	 */
+	private static Bound getBound(Value value, Value alpha, Value beta) {
+		if (value.compareTo(alpha) <= 0) {
+			return Bound.Upper;
+		} else if (value.compareTo(beta) >= 0) {
+			return Bound.Lower;
+		} else {
+			return Bound.Exact;
+		}
+	}
+
+	private boolean isHorizon(GameState gameState) {
+		return getMaxDepth() != null && gameState.getDepth() + gameState.reduction >= getMaxDepth();
+	}
+
+	private boolean terminalTest(GameState gameState) {
+		return isHorizon(gameState) || isEndOfGame(gameState.getBoardPosition());
+	}
+
+	private static boolean isEndOfGame(BoardPosition boardPosition) {
+		return boardPosition.isDrawDisregardingStalemateAndThreeFoldRepetition()
+				|| boardPosition.getAllPossiblePackedMoves().isEmpty();
+	}
+
+	/**
+	 * Resolves the captures beyond the horizon, so that only quiet positions are
+	 * evaluated: the side to move may either take the evaluation (stand pat) or
+	 * try the captures and promotions, which do not lose material. Captures, which
+	 * cannot raise the evaluation above alpha even with a margin, are skipped
+	 * (delta pruning). In check, all moves are searched instead, but only within
+	 * the first QUIESCENCE_CHECK_PLIES plies.
+	 *
+	 * @param ply the number of plies beyond the horizon
+	 * @return the value of the game state from the perspective of the side to
+	 *         move
+	 */
+	private Value quiesce(GameState gameState, Value alpha, Value beta, int ply) throws InterruptedException {
+		final BoardPosition boardPosition = gameState.getBoardPosition();
+		if (boardPosition.isStillCheck()) {
+			// disallowed state
+			return getInvalid();
+		}
+		if (isEndOfGame(boardPosition)) {
+			return evaluateAtHorizon(boardPosition);
+		}
+		final boolean check = ply < QUIESCENCE_CHECK_PLIES && boardPosition.isCheck();
+		Value standPat = null;
+		Value v = getMin();
+		if (!check) {
+			standPat = evaluateAtHorizon(boardPosition);
+			// beyond QUIESCENCE_CHECK_PLIES, a checkmate is only known by the evaluation
+			if (standPat.isInvalid() || standPat.isMin() || standPat.isMax() || standPat.compareTo(beta) >= 0) {
+				return standPat;
+			}
+			v = standPat;
+			alpha = max(alpha, v);
+		}
+		boolean atLeastOneValid = false;
+		for (GameState successor : check ? getSuccessors(gameState) : getQuiescenceSuccessors(gameState)) {
+			final int move = successor.getPackedMove();
+			if (standPat != null) {
+				final Value bound = shift(standPat, getMaterialGain(boardPosition, move) + DELTA_MARGIN);
+				if (bound != null && bound.compareTo(alpha) <= 0) {
+					continue;
+				}
+			}
+			++visitedNodes;
+			checkStop();
+			successor.enter();
+			final Value m;
+			try {
+				m = quiesce(successor, beta.negate(), alpha.negate(), ply + 1).negate();
+			} finally {
+				successor.leave();
+			}
+			if (m.isInvalid()) {
+				continue;
+			}
+			atLeastOneValid = true;
+			v = max(v, m);
+			alpha = max(alpha, v);
+			if (alpha.compareTo(beta) >= 0 || v.isMax()) {
+				break;
+			}
+		}
+		if (check && !atLeastOneValid) {
+			// checkmate
+			return evaluateAtHorizon(boardPosition);
+		}
+		return v;
+	}
+
+	private Value evaluateAtHorizon(BoardPosition boardPosition) {
+		final Value value = evaluateForSideToMove(boardPosition);
+		if (debug) {
+			value.setBoardPosition(boardPosition.createSnapshot());
+		}
+		return value;
+	}
+
+	/**
+	 * @return the evaluation of the position from the perspective of the side to
+	 *         move
+	 */
+	private Value evaluateForSideToMove(BoardPosition boardPosition) {
+		final Value value = evaluate(boardPosition);
+		return boardPosition.getColourToMove() == colour ? value : value.negate();
+	}
+
+	/**
+	 * @return the cheap evaluation of the position from the perspective of the
+	 *         side to move or null
+	 */
+	private Value evaluateCheaplyForSideToMove(BoardPosition boardPosition) {
+		final Value value = evaluateCheaply(boardPosition);
+		return value == null || boardPosition.getColourToMove() == colour ? value : value.negate();
+	}
+
+	/**
+	 * Alpha-beta-search in negamax form: the value of a game state is the best
+	 * negated value of its successors.
+	 *
+	 * @return the value of the game state from the perspective of the side to
+	 *         move, i.e. of this player at even and of the opponent at odd depths
+	 */
+	private Value negamax(GameState gameState, Value alpha, Value beta) throws InterruptedException {
 		++visitedNodes;
 		checkStop();
-		BoardPosition.Key key = gameState.getBoardPosition().getKey();
-		Value result = transpositionTable != null ? transpositionTable.get(key) : null;
+		final long key = gameState.getBoardPosition().getKey();
+		final int depth = gameState.getDraft();
+		final Value alpha0 = alpha;
+		final Value beta0 = beta;
+		Value result = null;
+		clearPrincipalVariation(gameState.getDepth());
+		if (transpositionTable != null) {
+			if (transpositionTable.find(key, probe)) {
+				gameState.hashMove = probe.getBestMove();
+				// the root moves must be searched to be evaluated, even if the value of the
+				// root is known from a previous search
+				if (gameState.getDepth() > 0 && probe.getDepth() >= depth) {
+					final Value value = probe.getValue();
+					switch (probe.getBound()) {
+					case Exact:
+						result = value;
+						break;
+					case Lower:
+						if (value.compareTo(beta) >= 0) {
+							result = value;
+						}
+						break;
+					case Upper:
+						if (value.compareTo(alpha) <= 0) {
+							result = value;
+						}
+						break;
+					}
+					if (result != null) {
+						// the stored value may stem from a search cut off at its horizon
+						horizonReached = true;
+					}
+				}
+			}
+		}
+		// the bound of the values of the quiet moves, if they are not worth a search
+		Value futilityValue = null;
+		if (result == null && isFrontier(gameState)) {
+			horizonReached = true;
+			final Value staticValue = evaluateCheaplyForSideToMove(gameState.getBoardPosition());
+			if (staticValue != null) {
+				result = pruneFrontier(gameState, staticValue, alpha, beta);
+				if (result == null) {
+					futilityValue = getFutilityValue(gameState, staticValue, alpha);
+				} else if (transpositionTable != null) {
+					transpositionTable.put(key, depth, getBound(result, alpha0, beta0), result, PackedMove.NONE);
+				}
+			}
+		}
+		if (result == null && canPassTurn(gameState, beta)) {
+			result = searchNullMove(gameState, beta);
+			if (result != null && transpositionTable != null) {
+				transpositionTable.put(key, depth, Bound.Lower, result, PackedMove.NONE);
+			}
+		}
+		int bestMove = PackedMove.NONE;
 		if (result == null) {
+			if (gameState.principal && gameState.getDepth() < principalVariation.length) {
+				// the move of the previous principal variation is the most probable best
+				// move, even if the transposition table knows another one
+				gameState.hashMove = principalVariation[gameState.getDepth()];
+			}
+			Bound bound = Bound.Exact;
 			if (gameState.getBoardPosition().isStillCheck()) {
 				// disallowed state
 				result = getInvalid();
 				assert (result != null);
+			} else if (isHorizon(gameState)) {
+				horizonReached = true;
+				result = quiesce(gameState, alpha, beta, 0);
+				bound = getBound(result, alpha0, beta0);
 			} else if (terminalTest(gameState)) {
-				result = evaluate(gameState.getBoardPosition());
-				if (debug) {
-					result.setBoardPosition(gameState.getBoardPosition());
-				}
+				result = evaluateAtHorizon(gameState.getBoardPosition());
 			} else {
-				Value v = getMax();
+				Value v = getMin();
 				boolean atLeastOneValid = false;
-				for (GameState successor : getSuccessors(gameState)) {
-					Value m = maxValue(successor, alpha, beta);
+				int moveNumber = 0;
+				Iterator<GameState> successors = (gameState.getDepth() == 0 ? getRootSuccessors(gameState)
+						: getSuccessors(gameState)).iterator();
+				while (successors.hasNext()) {
+					GameState successor = successors.next();
+					++moveNumber;
+					if (futilityValue != null && atLeastOneValid && MoveHistory.isQuiet(successor.getPackedMove())
+							&& !givesCheck(successor)) {
+						// not even the margin would raise it above alpha
+						v = max(v, futilityValue);
+						continue;
+					}
+					final int reduction = atLeastOneValid
+							? getLateMoveReduction(gameState, successor.getPackedMove(), moveNumber)
+							: 0;
+					final Value m = searchSuccessor(successor, alpha, beta, atLeastOneValid, reduction);
+					if (gameState.getDepth() == 0) {
+						recordRootMove(successor, m, alpha);
+					}
 					if (m.isInvalid()) {
 						continue;
 					}
 					atLeastOneValid = true;
-					v = min(v, m);
-					beta = min(beta, v);
+					if (bestMove == PackedMove.NONE || m.compareTo(v) > 0) {
+						bestMove = successor.getPackedMove();
+					}
+					if (m.compareTo(alpha) > 0) {
+						updatePrincipalVariation(gameState.getDepth(), successor.getPackedMove());
+					}
+					v = max(v, m);
+					alpha = max(alpha, v);
 					if (alpha.compareTo(beta) >= 0) {
-						// maximizer already found an equally good or better move elsewhere
-						// no use to look for a worse alternative
+						// the opponent already has a better or equally bad option
+						// no use to look for an even better alternative
+						storeCutoff(gameState, successor.getPackedMove());
 						break;
-					} else if (v.isMin()) {
-						// can't get worse
+					} else if (v.isMax()) {
+						// can't get better
+						break;
+					} else if (canSplit(gameState)) {
+						SplitPoint splitPoint = split(gameState, successors, moveNumber, alpha, beta, v, bestMove);
+						v = splitPoint.value;
+						bestMove = splitPoint.bestMove;
+						alpha = max(alpha, v);
+						if (splitPoint.cutoffMove != PackedMove.NONE) {
+							storeCutoff(gameState, splitPoint.cutoffMove);
+						}
 						break;
 					}
 				}
 				if (atLeastOneValid) {
 					result = v;
+					bound = getBound(result, alpha0, beta0);
 				} else {
 					// we are actually in a terminal state
-					result = evaluate(gameState.getBoardPosition());
+					result = evaluateForSideToMove(gameState.getBoardPosition());
 				}
-				result = v;
 			}
 			if (transpositionTable != null) {
-				transpositionTable.put(key, result);
+				transpositionTable.put(key, depth, bound, result, bestMove);
 			}
 		}
-		if (gameState.getDepth() == 1 && !result.isInvalid() && (result.isMin() || alpha.compareTo(beta) < 0)) {
-			// we must only take the value for granted, if we did not prune possibly worse
-			// alternatives!
-			gameState.setValue(result);
-			evaluatedMoves.add(gameState);
-		}
 		return result;
 	}
 
@@ -327,13 +1642,12 @@ public abstract class MinimaxPlayer extends EnginePlayer {
 				? previouslyEvaluatedMoves
 				: evaluatedMoves;
 		for (GameState gameState : col) {
-			String evaluatedMove = gameState.getBoardPosition().getLastMove().asUciMove() + " "
-					+ gameState.getValue().toString();
+			String evaluatedMove = gameState.getMove().asUciMove() + " " + gameState.getValue().toString();
 			if (debug) {
 				assert (gameState.getValue().getBoardPosition() != null);
 				List<Move> performedMoves = gameState.getValue().getBoardPosition().getPerformedMoves();
-				printStream.println(evaluatedMove + " " + Move.toString(performedMoves.subList(
-						gameState.getBoardPosition().getPerformedMoves().size() - 1, performedMoves.size()), false));
+				printStream.println(evaluatedMove + " "
+						+ Move.toString(performedMoves.subList(rootPly, performedMoves.size()), false));
 				printStream.println(gameState.getValue().getBoardPosition().toString());
 			} else {
 				printStream.println(evaluatedMove);
@@ -348,7 +1662,7 @@ public abstract class MinimaxPlayer extends EnginePlayer {
 				? previouslyEvaluatedMoves
 				: evaluatedMoves;
 		return evaluatedGameStates.stream()
-				.collect(Collectors.toMap(g -> g.getBoardPosition().getLastMove(), GameState::getValue));
+				.collect(Collectors.toMap(GameState::getMove, GameState::getValue));
 	}
 
 	protected abstract Value getInvalid();
@@ -359,13 +1673,31 @@ public abstract class MinimaxPlayer extends EnginePlayer {
 
 	protected abstract Value evaluate(BoardPosition boardPosition);
 
+	/**
+	 * @return a rough evaluation of the position from the perspective of this
+	 *         player, which is much cheaper than {@link #evaluate(BoardPosition)},
+	 *         or null if there is none, which disables frontier pruning
+	 */
+	protected Value evaluateCheaply(BoardPosition boardPosition) {
+		return null;
+	}
+
 	protected Integer getMaxDepth() {
 		return maxDepth;
 	}
 
-	protected abstract Integer getCutoffDepth();
 
-	protected abstract boolean isQuiescent(BoardPosition boardPosition);
+	protected abstract Iterable<GameState> getSuccessors(GameState gameState);
+
+	/**
+	 * @return the successors of the game state by captures and promotions, which
+	 *         are worth a search beyond the horizon
+	 */
+	protected abstract Iterable<GameState> getQuiescenceSuccessors(GameState gameState);
 
-	protected abstract List<GameState> getSuccessors(GameState gameState);
+	/**
+	 * @return the material the move captures or gains by promotion in the units of
+	 *         {@link #shift(Value, int)}
+	 */
+	protected abstract int getMaterialGain(BoardPosition boardPosition, int move);
 }
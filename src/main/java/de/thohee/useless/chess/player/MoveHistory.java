@@ -0,0 +1,133 @@
+package de.thohee.useless.chess.player;
+
+import java.util.Arrays;
+
+import de.thohee.useless.chess.board.PackedMove;
+
+/**
+ * Remembers the quiet moves which caused beta cutoffs, so that the
+ * {@link MovePicker} can try them early in other positions:
+ * <ul>
+ * <li>the killer moves per depth, i.e. the latest cutoff moves of sibling
+ * positions</li>
+ * <li>the history score per colour, from and to square, which sums up the
+ * cutoffs of a move everywhere in the tree, weighted by the depth below</li>
+ * <li>the counter move per colour, from and to square of the previous move,
+ * i.e. the latest refutation of that move</li>
+ * </ul>
+ *
+ * Each search thread has its own history, so the tables are plain arrays.
+ *
+ * @author Thomas
+ *
+ */
+class MoveHistory {
+
+	static final int KILLERS = 2;
+
+	// colour, from and to square
+	private static final int MOVE_INDICES = 2 * 64 * 64;
+
+	// the scores are halved before they get out of bounds
+	private static final int MAX_SCORE = 1 << 24;
+
+	// KILLERS slots per depth
+	private int[] killers = new int[64 * KILLERS];
+
+	private final int[] scores = new int[MOVE_INDICES];
+
+	private final int[] counterMoves = new int[MOVE_INDICES];
+
+	private static int index(int move) {
+		return (PackedMove.getColour(move).ordinal() << 12) | (PackedMove.getFrom(move) << 6) | PackedMove.getTo(move);
+	}
+
+	static boolean isQuiet(int move) {
+		return !PackedMove.isCapture(move) && !PackedMove.isPromotion(move);
+	}
+
+	/**
+	 * @return the killer move of the given slot for the game states of the given
+	 *         depth or {@link PackedMove#NONE}
+	 */
+	int getKiller(int depth, int slot) {
+		assert (0 <= slot && slot < KILLERS);
+		final int index = depth * KILLERS + slot;
+		return index < killers.length ? killers[index] : PackedMove.NONE;
+	}
+
+	boolean isKiller(int depth, int move) {
+		for (int slot = 0; slot < KILLERS; ++slot) {
+			if (getKiller(depth, slot) == move) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	int getScore(int move) {
+		return scores[index(move)];
+	}
+
+	private static boolean hasCounterMove(int previousMove) {
+		// passing the turn is no move to be refuted
+		return previousMove != PackedMove.NONE && !PackedMove.isNullMove(previousMove);
+	}
+
+	/**
+	 * @return the latest move which refuted the given previous move or
+	 *         {@link PackedMove#NONE}
+	 */
+	int getCounterMove(int previousMove) {
+		return hasCounterMove(previousMove) ? counterMoves[index(previousMove)] : PackedMove.NONE;
+	}
+
+	/**
+	 * Remembers a move which caused a beta cutoff. Captures and promotions are
+	 * ignored, since they are tried early anyway.
+	 *
+	 * @param depth        the depth of the game state in the search tree
+	 * @param previousMove the move leading to the game state or
+	 *                     {@link PackedMove#NONE}
+	 * @param draft        the depth of the search below the game state
+	 */
+	void update(int depth, int move, int previousMove, int draft) {
+		if (!isQuiet(move)) {
+			return;
+		}
+		if ((depth + 1) * KILLERS > killers.length) {
+			killers = Arrays.copyOf(killers, 2 * (depth + 1) * KILLERS);
+		}
+		final int first = depth * KILLERS;
+		if (killers[first] != move) {
+			System.arraycopy(killers, first, killers, first + 1, KILLERS - 1);
+			killers[first] = move;
+		}
+		final int index = index(move);
+		final int bonus = Math.max(1, draft);
+		scores[index] += bonus * bonus;
+		if (scores[index] > MAX_SCORE) {
+			halveScores();
+		}
+		if (hasCounterMove(previousMove)) {
+			counterMoves[index(previousMove)] = move;
+		}
+	}
+
+	private void halveScores() {
+		for (int i = 0; i < scores.length; ++i) {
+			scores[i] >>= 1;
+		}
+	}
+
+	/**
+	 * Prepares the history for the next search: the killers refer to the depths
+	 * of the previous search and are forgotten, the scores lose half of their
+	 * weight, the counter moves are kept.
+	 */
+	void age() {
+		Arrays.fill(killers, PackedMove.NONE);
+		halveScores();
+	}
+
+}
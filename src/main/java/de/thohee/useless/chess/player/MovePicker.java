@@ -0,0 +1,217 @@
+package de.thohee.useless.chess.player;
+
+import de.thohee.useless.chess.board.BoardPosition;
+import de.thohee.useless.chess.board.Coordinate;
+import de.thohee.useless.chess.board.Figure;
+import de.thohee.useless.chess.board.MoveList;
+import de.thohee.useless.chess.board.PackedMove;
+import de.thohee.useless.chess.board.StaticExchange;
+
+/**
+ * Picks the moves of a position in stages, so that a beta cutoff saves
+ * ordering the moves which are not examined anymore:
+ * <ol>
+ * <li>the hash move, i.e. the best move found for this position before</li>
+ * <li>captures and promotions, which do not obviously lose material, by most
+ * valuable victim and least valuable attacker</li>
+ * <li>the killer moves, i.e. quiet moves which caused a cutoff in a sibling
+ * position, and the counter move, which refuted the previous move before</li>
+ * <li>the remaining quiet moves by descending history score</li>
+ * <li>captures which lose material according to the static exchange
+ * evaluation</li>
+ * </ol>
+ *
+ * For the quiescence search, it picks the hash move, if it is a capture or
+ * promotion, and the captures and promotions which do not lose material only.
+ *
+ * @author Thomas
+ *
+ */
+class MovePicker {
+
+	private enum Stage {
+		HashMove, GoodCaptures, Killers, CounterMove, QuietMoves, BadCaptures, Done
+	}
+
+	private final BoardPosition boardPosition;
+	private final MoveList moves;
+	private final int hashMove;
+	private final MoveHistory history;
+	private final StaticExchange staticExchange;
+	private final int depth;
+	private final int counterMove;
+	private final boolean capturesOnly;
+
+	private Stage stage = Stage.HashMove;
+	private MoveList captures = null;
+	private MoveList badCaptures = null;
+	private MoveList quietMoves = null;
+	private int index = 0;
+
+	/**
+	 * @param hashMove may be {@link PackedMove#NONE}
+	 * @param history  of the search thread
+	 * @param depth    of the position in the search tree
+	 */
+	MovePicker(BoardPosition boardPosition, int hashMove, MoveHistory history, int depth,
+			StaticExchange staticExchange) {
+		this.boardPosition = boardPosition;
+		this.moves = boardPosition.getAllPossiblePackedMoves();
+		this.hashMove = hashMove != PackedMove.NONE && moves.contains(hashMove) ? hashMove : PackedMove.NONE;
+		this.history = history;
+		this.depth = depth;
+		this.staticExchange = staticExchange;
+		this.counterMove = history.getCounterMove(boardPosition.getLastPackedMove());
+		this.capturesOnly = false;
+	}
+
+	/**
+	 * Picks the captures and promotions for the quiescence search.
+	 *
+	 * @param hashMove may be {@link PackedMove#NONE}
+	 */
+	MovePicker(BoardPosition boardPosition, int hashMove, StaticExchange staticExchange) {
+		this.boardPosition = boardPosition;
+		this.moves = boardPosition.getAllPossiblePackedMoves();
+		this.hashMove = hashMove != PackedMove.NONE && isTactical(hashMove) && moves.contains(hashMove) ? hashMove
+				: PackedMove.NONE;
+		this.history = null;
+		this.depth = 0;
+		this.staticExchange = staticExchange;
+		this.counterMove = PackedMove.NONE;
+		this.capturesOnly = true;
+	}
+
+	private static boolean isTactical(int move) {
+		return !MoveHistory.isQuiet(move);
+	}
+
+	private boolean isPickedEarly(int move) {
+		return move == hashMove || history.isKiller(depth, move) || move == counterMove;
+	}
+
+	private static int getVictimValue(BoardPosition boardPosition, int move) {
+		switch (PackedMove.getCapture(move)) {
+		case Regular:
+			return ReadyPlayer1.getValue(boardPosition.get(Coordinate.get(PackedMove.getTo(move))).getFigure());
+		case EnPassant:
+			return ReadyPlayer1.getValue(Figure.Pawn);
+		default:
+			return 0;
+		}
+	}
+
+	private int getVictimValue(int move) {
+		return getVictimValue(boardPosition, move);
+	}
+
+	/**
+	 * @return the value of the captured piece plus the value the promoted pawn
+	 *         gains
+	 */
+	static int getMaterialGain(BoardPosition boardPosition, int move) {
+		final Figure newFigure = PackedMove.getNewFigure(move);
+		return getVictimValue(boardPosition, move)
+				+ (newFigure != null ? ReadyPlayer1.getValue(newFigure) - ReadyPlayer1.getValue(Figure.Pawn) : 0);
+	}
+
+	private boolean isBadCapture(int move) {
+		// the exchange needs only be evaluated if the victim is worth less than the
+		// attacker
+		return !PackedMove.isPromotion(move)
+				&& getVictimValue(move) < ReadyPlayer1.getValue(PackedMove.getFigure(move))
+				&& staticExchange.evaluate(boardPosition, move) < 0;
+	}
+
+	private void collectCaptures() {
+		captures = new MoveList(16);
+		badCaptures = new MoveList(4);
+		for (int i = 0; i < moves.size(); ++i) {
+			final int move = moves.get(i);
+			if (move != hashMove && isTactical(move)) {
+				if (isBadCapture(move)) {
+					badCaptures.add(move);
+				} else {
+					captures.add(move);
+				}
+			}
+		}
+		captures.sort(m -> {
+			Figure newFigure = PackedMove.getNewFigure(m);
+			int gain = getVictimValue(m) + (newFigure != null ? ReadyPlayer1.getValue(newFigure) : 0);
+			return 16 * gain - ReadyPlayer1.getValue(PackedMove.getFigure(m));
+		});
+	}
+
+	/**
+	 * @return the next move or {@link PackedMove#NONE} if all moves have been
+	 *         picked
+	 */
+	int next() {
+		while (true) {
+			switch (stage) {
+			case HashMove:
+				stage = Stage.GoodCaptures;
+				if (hashMove != PackedMove.NONE) {
+					return hashMove;
+				}
+				break;
+			case GoodCaptures:
+				if (captures == null) {
+					collectCaptures();
+					index = 0;
+				}
+				if (index < captures.size()) {
+					return captures.get(index++);
+				}
+				stage = capturesOnly ? Stage.Done : Stage.Killers;
+				index = 0;
+				break;
+			case Killers:
+				while (index < MoveHistory.KILLERS) {
+					final int killer = history.getKiller(depth, index++);
+					if (killer != PackedMove.NONE && killer != hashMove && !isTactical(killer)
+							&& moves.contains(killer)) {
+						return killer;
+					}
+				}
+				stage = Stage.CounterMove;
+				break;
+			case CounterMove:
+				stage = Stage.QuietMoves;
+				index = 0;
+				if (counterMove != PackedMove.NONE && counterMove != hashMove && !history.isKiller(depth, counterMove)
+						&& !isTactical(counterMove) && moves.contains(counterMove)) {
+					return counterMove;
+				}
+				break;
+			case QuietMoves:
+				if (quietMoves == null) {
+					quietMoves = new MoveList(moves.size());
+					for (int i = 0; i < moves.size(); ++i) {
+						final int move = moves.get(i);
+						if (!isTactical(move) && !isPickedEarly(move)) {
+							quietMoves.add(move);
+						}
+					}
+					quietMoves.sort(history::getScore);
+				}
+				if (index < quietMoves.size()) {
+					return quietMoves.get(index++);
+				}
+				stage = Stage.BadCaptures;
+				index = 0;
+				break;
+			case BadCaptures:
+				if (index < badCaptures.size()) {
+					return badCaptures.get(index++);
+				}
+				stage = Stage.Done;
+				break;
+			case Done:
+				return PackedMove.NONE;
+			}
+		}
+	}
+
+}
@@ -2,16 +2,14 @@ package de.thohee.useless.chess.player;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+import de.thohee.useless.chess.board.Bitboards;
 import de.thohee.useless.chess.board.BoardPosition;
 import de.thohee.useless.chess.board.Colour;
 import de.thohee.useless.chess.board.Coordinate;
@@ -19,8 +17,10 @@ import de.thohee.useless.chess.board.Figure;
 import de.thohee.useless.chess.board.Move;
 import de.thohee.useless.chess.board.Move.Capture;
 import de.thohee.useless.chess.board.Move.IllegalMoveFormatException;
+import de.thohee.useless.chess.board.PackedMove;
 import de.thohee.useless.chess.board.Piece;
 import de.thohee.useless.chess.board.PositionedPiece;
+import de.thohee.useless.chess.board.StaticExchange;
 
 public class ReadyPlayer1 extends MinimaxPlayer {
 
@@ -44,9 +44,19 @@ public class ReadyPlayer1 extends MinimaxPlayer {
 		this.openings = false;
 	}
 
-	private BoardPosition lastThreatAnalysisBoardPosition = null;
+	@Override
+	protected MinimaxPlayer createHelper() {
+		ReadyPlayer1 helper = new ReadyPlayer1(colour, false, firstMoveAsWhite);
+		helper.openings = this.openings;
+		helper.evaluateOpenings = this.evaluateOpenings;
+		return helper;
+	}
+
+	private Long lastThreatAnalysisKey = null;
 	private int lastThreatAnalysisValue = 0;
 
+	private final StaticExchange staticExchange = createStaticExchange();
+
 	@Override
 	protected Value evaluate(BoardPosition boardPosition) {
 		ValueVector result = new ValueVector();
@@ -83,17 +93,48 @@ public class ReadyPlayer1 extends MinimaxPlayer {
 		return result;
 	}
 
+	@Override
+	protected Value evaluateCheaply(BoardPosition boardPosition) {
+		if (boardPosition.getMaxNumberOfRepetitions() >= 2 || boardPosition.isDraw()) {
+			// the draw flag outweighs the material
+			return null;
+		}
+		// the material balance only, without the expensive threat analysis
+		ValueVector result = new ValueVector();
+		result.add(0);
+		result.add(evaluateMaterial(boardPosition));
+		result.add(0);
+		result.add(0);
+		return result;
+	}
+
+	// the component of the value vector holding the material balance
+	private static final int MATERIAL = 1;
+
+	@Override
+	protected Value shift(Value value, int delta) {
+		// aspiration windows and pruning margins in units of pawns
+		return ((ValueVector) value).offset(MATERIAL, delta);
+	}
+
 	@Override
 	protected Move selectMove(Iterator<GameState> iterator) {
-		return iterator.next().getBoardPosition().getLastMove();
+		return iterator.next().getMove();
 	}
 
 	@Override
-	protected boolean isQuiescent(BoardPosition boardPosition) {
-		return !boardPosition.getAllPossibleMoves().stream().anyMatch(m -> m.getNewFigure() != null)
-				&& evaluateThreatsAndProtections(boardPosition) == 0;
+	protected Iterable<GameState> getQuiescenceSuccessors(GameState gameState) {
+		return getSuccessors(gameState,
+				new MovePicker(gameState.getBoardPosition(), gameState.getHashMove(), staticExchange));
 	}
 
+	@Override
+	protected int getMaterialGain(BoardPosition boardPosition, int move) {
+		return MovePicker.getMaterialGain(boardPosition, move);
+	}
+
+	private static final Figure[] figures = Figure.values();
+
 	static int getValue(Figure figure) {
 		int value = 0;
 		switch (figure) {
@@ -117,70 +158,52 @@ public class ReadyPlayer1 extends MinimaxPlayer {
 		return value;
 	}
 
+	static StaticExchange createStaticExchange() {
+		int[] values = new int[figures.length];
+		for (Figure figure : figures) {
+			values[figure.ordinal()] = getValue(figure);
+		}
+		return new StaticExchange(values);
+	}
+
 	private int evaluateMaterial(BoardPosition boardPosition) {
 		int ownValues = 0;
 		int otherValues = 0;
-		Iterator<Piece> iterator = boardPosition.getPieces();
-		while (iterator.hasNext()) {
-			Piece piece = iterator.next();
-			int value = getValue(piece.getFigure());
-			if (piece.getColour().equals(this.colour)) {
-				ownValues += value;
-			} else {
-				otherValues += value;
-			}
+		final Colour opponentsColour = this.colour.opposite();
+		for (Figure figure : figures) {
+			int value = getValue(figure);
+			ownValues += value * Long.bitCount(boardPosition.getBitboard(this.colour, figure));
+			otherValues += value * Long.bitCount(boardPosition.getBitboard(opponentsColour, figure));
 		}
 		return ownValues - otherValues;
 	}
 
 	int evaluateThreatsAndProtections(BoardPosition boardPosition) {
-		// test if exactly the same object (==) has already been evaluated
-		if (boardPosition == this.lastThreatAnalysisBoardPosition) {
-			// computed during terminal test
+		// the search position is modified in place, so its identity does not tell
+		// whether it has already been evaluated
+		final long key = boardPosition.getKey();
+		if (this.lastThreatAnalysisKey != null && this.lastThreatAnalysisKey == key) {
+			// evaluated just before, e.g. by a re-search of the same position
 			return this.lastThreatAnalysisValue;
 		}
 		int[] valueLosses = new int[2];
 		valueLosses[0] = 0;
 		valueLosses[1] = 0;
-		Iterator<PositionedPiece> iterator = boardPosition.getPositionedPieces();
-		while (iterator.hasNext()) {
-			PositionedPiece coordinateAndPiece = iterator.next();
-			Piece piece = coordinateAndPiece.getPiece();
-			Coordinate coordinate = coordinateAndPiece.getCoordinate();
-			int pieceValue = getValue(piece.getFigure());
-			Set<Piece> threats = boardPosition.getThreatsTo(piece.getColour(), coordinate);
-			if (!threats.isEmpty()) {
-				// if there are no protections then the piece value is lost
-				int valueLoss = pieceValue;
-				Set<Piece> protections = boardPosition.getProtections(coordinate);
-				if (!protections.isEmpty()) {
-					ArrayList<Integer> threatValues = threats.stream().map(p -> getValue(p.getFigure()))
-							.collect(Collectors.toCollection(ArrayList::new));
-					threatValues.sort(Integer::compare);
-					ArrayList<Integer> protectionValues = protections.stream().map(p -> getValue(p.getFigure()))
-							.collect(Collectors.toCollection(ArrayList::new));
-					protectionValues.sort(Integer::compare);
-					for (int t = 0; t < threatValues.size(); ++t) {
-						if (t < protectionValues.size()) {
-							// attacking piece gets beaten
-							valueLoss -= threatValues.get(t);
-							if (t + 1 < threatValues.size()) {
-								// but also protector is attacked
-								valueLoss += protectionValues.get(t);
-							}
-						} else {
-							break;
-						}
-					}
-					// if attacked color would actually gain value, we do not count this threat
-					valueLoss = Math.max(0, valueLoss);
-				}
-				valueLosses[piece.getColour().ordinal()] += valueLoss;
+		for (Colour colour : Colour.values()) {
+			final Colour opponent = colour.opposite();
+			long threatenedPieces = boardPosition.getOccupancy(colour) & ~boardPosition.getBitboard(colour, Figure.King)
+					& boardPosition.getAttacks(opponent);
+			while (threatenedPieces != 0L) {
+				final int square = Bitboards.first(threatenedPieces);
+				threatenedPieces = Bitboards.withoutFirst(threatenedPieces);
+				// if the opponent would lose material by the exchange, we do not count this
+				// threat
+				valueLosses[colour.ordinal()] += Math.max(0, staticExchange.evaluate(boardPosition, square, opponent));
 			}
 		}
 		int threatsValue = valueLosses[getColour().opposite().ordinal()] - valueLosses[getColour().ordinal()];
 		this.lastThreatAnalysisValue = threatsValue;
-		this.lastThreatAnalysisBoardPosition = boardPosition;
+		this.lastThreatAnalysisKey = key;
 		return threatsValue;
 	}
 
@@ -300,13 +323,8 @@ public class ReadyPlayer1 extends MinimaxPlayer {
 			int threatsAndProtectionsInCenter = 0;
 			for (int r = 3; r <= 4; ++r) {
 				for (int c = 3; c <= 4; ++c) {
-					Coordinate coordinate = Coordinate.get(c, r);
-					threatsAndProtectionsInCenter += boardPosition.getThreatsTo(ownColour.opposite(), coordinate)
-							.size();
-					Piece piece = boardPosition.get(coordinate);
-					if (piece != null && piece.getColour().equals(ownColour)) {
-						threatsAndProtectionsInCenter += boardPosition.getProtections(coordinate).size();
-					}
+					threatsAndProtectionsInCenter += Bitboards
+							.count(boardPosition.getAttackersTo(Coordinate.get(c, r), ownColour));
 				}
 			}
 			value += threatsAndProtectionsInCenter;
@@ -364,30 +382,18 @@ public class ReadyPlayer1 extends MinimaxPlayer {
 
 	private Integer evaluateEndGame(BoardPosition boardPosition) {
 		final Colour opponentsColour = getColour().opposite();
-		PositionedPiece opponentsSingleKing = null;
-		Iterator<PositionedPiece> positionedPieces = boardPosition.getPositionedPieces();
-		while (positionedPieces.hasNext()) {
-			PositionedPiece positionedPiece = positionedPieces.next();
-			if (positionedPiece.getPiece().getColour().equals(opponentsColour)) {
-				if (positionedPiece.getPiece().getFigure().equals(Figure.King)) {
-					opponentsSingleKing = positionedPiece;
-				} else {
-					opponentsSingleKing = null;
-					break;
-				}
-			}
-		}
-		if (opponentsSingleKing != null) {
+		final long opponentsPieces = boardPosition.getOccupancy(opponentsColour);
+		if (opponentsPieces != 0L && opponentsPieces == boardPosition.getBitboard(opponentsColour, Figure.King)) {
+			Coordinate kingsPosition = Coordinate.get(Long.numberOfTrailingZeros(opponentsPieces));
+			PositionedPiece opponentsSingleKing = new PositionedPiece(kingsPosition, boardPosition.get(kingsPosition));
 			int value = -10 * kingsReach(boardPosition, opponentsSingleKing, null);
-			Iterator<PositionedPiece> positionedPieces2 = boardPosition.getPositionedPieces();
-			while (positionedPieces2.hasNext()) {
-				PositionedPiece positionedPiece = positionedPieces2.next();
-				if (positionedPiece.getPiece().getColour().equals(getColour())
-						&& positionedPiece.getPiece().getFigure() != Figure.Pawn) {
-					// do not linger around in the distance and only threaten king from afar
-					// but zoom in on opponents king with own officers
-					value -= distance(positionedPiece.getCoordinate(), opponentsSingleKing.getCoordinate());
-				}
+			long officers = boardPosition.getOccupancy(getColour()) & ~boardPosition.getBitboard(getColour(), Figure.Pawn);
+			while (officers != 0L) {
+				Coordinate officersPosition = Coordinate.get(Long.numberOfTrailingZeros(officers));
+				officers &= officers - 1;
+				// do not linger around in the distance and only threaten king from afar
+				// but zoom in on opponents king with own officers
+				value -= distance(officersPosition, kingsPosition);
 			}
 			return value;
 		}
@@ -480,14 +486,12 @@ public class ReadyPlayer1 extends MinimaxPlayer {
 		if (column < 0 || column > 7 || row < 0 || row > 7) {
 			return false;
 		} else {
-			Coordinate to = Coordinate.get(column, row);
-			Piece piece = boardPosition.get(to);
-			if (piece == null) {
-				return boardPosition.getThreatsTo(colour, to).isEmpty();
-			} else if (piece.getColour().equals(colour)) {
+			final int square = Bitboards.square(column, row);
+			if (Bitboards.contains(boardPosition.getOccupancy(colour), square)) {
 				return false;
 			} else {
-				return boardPosition.getProtections(to).isEmpty();
+				// neither threatened nor protected
+				return !Bitboards.contains(boardPosition.getAttacks(colour.opposite()), square);
 			}
 		}
 	}
@@ -506,8 +510,8 @@ public class ReadyPlayer1 extends MinimaxPlayer {
 					row = 7 - row;
 				}
 				if (row > 1) {
-					int protectionsByOtherPawns = (int) boardPosition.getProtections(coordinate).stream()
-							.filter(p -> p.getFigure().equals(Figure.Pawn)).count();
+					int protectionsByOtherPawns = Bitboards.count(boardPosition.getAttackersTo(coordinate, this.colour)
+							& boardPosition.getBitboard(this.colour, Figure.Pawn));
 					pawnStructureValue += protectionsByOtherPawns;
 				}
 			}
@@ -530,53 +534,24 @@ public class ReadyPlayer1 extends MinimaxPlayer {
 		return ValueVector.createMax();
 	}
 
-	private class MoveComparator implements Comparator<Move> {
-
-		private BoardPosition boardPosition;
-
-		public MoveComparator(BoardPosition boardPosition) {
-			this.boardPosition = boardPosition;
-		}
-
-		@Override
-		public int compare(Move m1, Move m2) {
-			int c1 = m1.getCapture() == null || m1.getCapture().equals(Capture.None) ? 0 : 1;
-			int c2 = m2.getCapture() == null || m2.getCapture().equals(Capture.None) ? 0 : 1;
-			// capture move is better, i.e. smaller
-			int compare = c2 - c1;
-			if (compare == 0 && c1 == 1) {
-				// both capture
-				int v1 = m1.getCapture().equals(Capture.EnPassant) ? 1
-						: getValue(boardPosition.get(m1.getTo()).getFigure());
-				int v2 = m2.getCapture().equals(Capture.EnPassant) ? 1
-						: getValue(boardPosition.get(m2.getTo()).getFigure());
-				// higher value of captured piece is better, i.e. smaller
-				compare = v2 - v1;
-			}
-			return compare;
-		}
-
-	}
-
 	@Override
-	protected List<GameState> getSuccessors(GameState gameState) {
+	protected Iterable<GameState> getSuccessors(GameState gameState) {
 		BoardPosition boardPosition = gameState.getBoardPosition();
-		List<Move> moves = null;
 		if (openings && boardPosition.getDepth() <= 1 && boardPosition.getColourToMove().equals(getColour())) {
-			moves = playOpening(boardPosition);
+			List<Move> moves = playOpening(boardPosition);
+			List<GameState> successors = new ArrayList<>(moves.size());
+			for (Move move : moves) {
+				successors.add(gameState.createSuccessorState(PackedMove.of(move)));
+			}
+			return successors;
 		} else {
-			moves = new ArrayList<>(boardPosition.getAllPossibleMoves());
-			// we prioritize the moves with a cheaper heuristic:
+			// we prioritize the moves with cheaper heuristics:
 			// looking at capture moves with high figure value first seems to improve the
 			// effect of alpha-beta-pruning
-			Collections.sort(moves, new MoveComparator(boardPosition));
-		}
-		assert (moves != null);
-		ArrayList<GameState> successors = new ArrayList<>(moves.size());
-		for (Move move : moves) {
-			successors.add(gameState.createSuccessorState(move));
+			return getSuccessors(gameState,
+					new MovePicker(boardPosition, gameState.getHashMove(), getMoveHistory(), gameState.getDepth(),
+							staticExchange));
 		}
-		return successors;
 	}
 
 	private List<Move> playOpening(BoardPosition boardPosition) {
@@ -635,10 +610,4 @@ public class ReadyPlayer1 extends MinimaxPlayer {
 		return moves;
 	}
 
-	@Override
-	protected Integer getCutoffDepth() {
-		// [4..6]
-		return getMaxDepth() != null ? Math.max(Math.min(4, getMaxDepth()), Math.min(6, getMaxDepth() * 6 / 10)) : null;
-	}
-
 }
@@ -1,46 +1,255 @@
 package de.thohee.useless.chess.player;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-import de.thohee.useless.chess.board.BoardPosition;
+import de.thohee.useless.chess.board.PackedMove;
 
+/**
+ * Table of fixed size, which remembers the values of searched positions. Each
+ * entry consists of a packed <code>long</code>, which holds the verification
+ * bits of the key, the best move, the bound type, the depth of the search
+ * below the position and the search generation, plus a reference to the
+ * {@link Value}, which cannot be packed since it may be a vector.
+ *
+ * The entries are organized in buckets of two. A new entry replaces the entry
+ * with the same key or else the one of an older search or of a shallower
+ * depth.
+ *
+ * The table may be shared by the threads of a parallel search without locks:
+ * a writer invalidates the entry before it replaces the value, and a reader
+ * only accepts a value if the entry did not change while it was read.
+ *
+ * @author Thomas
+ *
+ */
 public class TranspositionTable {
 
-	private static final int MAX_SIZE = 10000;
+	public static final int DEFAULT_SIZE_IN_MB = 16;
 
+	/**
+	 * Tells how the stored value relates to the actual value of the position.
+	 */
+	public enum Bound {
+		// the value is exact
+		Exact,
+		// the search failed high, the actual value is at least the stored value
+		Lower,
+		// the search failed low, the actual value is at most the stored value
+		Upper
+	}
+
+	private static final Bound[] bounds = Bound.values();
+
+	// the packed long per entry plus the reference to the value
+	private static final int BYTES_PER_ENTRY = 16;
+
+	private static final int VERIFICATION_BITS = 24;
+	private static final int MOVE_SHIFT = VERIFICATION_BITS;
+	private static final int MOVE_BITS = 23;
+	private static final int BOUND_SHIFT = MOVE_SHIFT + MOVE_BITS;
+	// 0 marks an empty entry
+	private static final int BOUND_BITS = 2;
+	private static final int DEPTH_SHIFT = BOUND_SHIFT + BOUND_BITS;
+	private static final int DEPTH_BITS = 8;
+	private static final int GENERATION_SHIFT = DEPTH_SHIFT + DEPTH_BITS;
+	private static final int GENERATION_BITS = 64 - GENERATION_SHIFT;
+
+	private static final long VERIFICATION_MASK = (1L << VERIFICATION_BITS) - 1;
+	private static final long MOVE_MASK = (1L << MOVE_BITS) - 1;
+	private static final long BOUND_MASK = (1L << BOUND_BITS) - 1;
+	private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+	private static final long GENERATION_MASK = (1L << GENERATION_BITS) - 1;
+
+	/**
+	 * The greatest depth an entry can hold. Greater depths are stored as this one.
+	 */
+	public static final int MAX_DEPTH = (int) DEPTH_MASK;
+
+	private final AtomicLongArray entries;
+	private final AtomicReferenceArray<Value> values;
+	private final int bucketMask;
+	private volatile int generation = 0;
+
+	// not exact if shared by several threads
 	private long cacheHits = 0L;
 	private long cacheMisses = 0L;
 
-	private Map<BoardPosition.Key, Value> hashMap = new HashMap<BoardPosition.Key, Value>();
-	private Queue<BoardPosition.Key> fifoQueue = new LinkedList<>();
+	public TranspositionTable() {
+		this(DEFAULT_SIZE_IN_MB);
+	}
+
+	/**
+	 * @param sizeInMB the memory used by the table itself, rounded down to a power
+	 *                 of two number of entries. The values come on top.
+	 */
+	public TranspositionTable(int sizeInMB) {
+		assert (sizeInMB > 0);
+		final long maxEntries = Math.min(1L << 30, sizeInMB * 1024L * 1024L / BYTES_PER_ENTRY);
+		final int size = Math.max(2, Integer.highestOneBit((int) maxEntries));
+		entries = new AtomicLongArray(size);
+		values = new AtomicReferenceArray<>(size);
+		bucketMask = size / 2 - 1;
+	}
 
-	public Value get(BoardPosition.Key boardPosition) {
-		Value value = hashMap.get(boardPosition);
-		if (value != null) {
-			++cacheHits;
-		} else {
-			++cacheMisses;
+	private static long verification(long key) {
+		return (key >>> (64 - VERIFICATION_BITS)) & VERIFICATION_MASK;
+	}
+
+	private int bucket(long key) {
+		return 2 * ((int) key & bucketMask);
+	}
+
+	private static int getGeneration(long entry) {
+		return (int) ((entry >>> GENERATION_SHIFT) & GENERATION_MASK);
+	}
+
+	private static int getDepth(long entry) {
+		return (int) ((entry >>> DEPTH_SHIFT) & DEPTH_MASK);
+	}
+
+	private static boolean isEmpty(long entry) {
+		return ((entry >>> BOUND_SHIFT) & BOUND_MASK) == 0L;
+	}
+
+	/**
+	 * Looks up the entry for the key. Its contents are copied, so that they stay
+	 * consistent even if another thread replaces the entry meanwhile.
+	 *
+	 * @return true if there is an entry for the key
+	 */
+	public boolean find(long key, Probe probe) {
+		final int bucket = bucket(key);
+		final long verification = verification(key);
+		for (int slot = bucket; slot < bucket + 2; ++slot) {
+			final long entry = entries.getAcquire(slot);
+			if (!isEmpty(entry) && (entry & VERIFICATION_MASK) == verification) {
+				final Value value = values.getAcquire(slot);
+				if (entries.getAcquire(slot) == entry) {
+					probe.entry = entry;
+					probe.value = value;
+					++cacheHits;
+					return true;
+				}
+			}
 		}
-		return value;
+		++cacheMisses;
+		return false;
 	}
 
-	public void put(BoardPosition.Key boardPosition, Value value) {
+	/**
+	 * The contents of an entry, reused for each lookup of a search thread.
+	 */
+	public static class Probe {
+
+		private long entry;
+		private Value value;
+
+		public Value getValue() {
+			return value;
+		}
+
+		public Bound getBound() {
+			return bounds[(int) ((entry >>> BOUND_SHIFT) & BOUND_MASK) - 1];
+		}
+
+		/**
+		 * @return the depth of the search below the position, which the value stems
+		 *         from
+		 */
+		public int getDepth() {
+			return TranspositionTable.getDepth(entry);
+		}
+
+		/**
+		 * @return the best move found for the position or {@link PackedMove#NONE}
+		 */
+		public int getBestMove() {
+			return TranspositionTable.getBestMove(entry);
+		}
+	}
+
+	private static int getBestMove(long entry) {
+		return (int) ((entry >>> MOVE_SHIFT) & MOVE_MASK);
+	}
+
+	/**
+	 * @param depth the depth of the search below the position, at most
+	 *              {@link #MAX_DEPTH} are stored
+	 */
+	public void put(long key, int depth, Bound bound, Value value, int bestMove) {
 		assert (value.getBoardPosition() == null);
-		hashMap.put(boardPosition, value);
-		fifoQueue.add(boardPosition);
-		while (fifoQueue.size() > MAX_SIZE) {
-			hashMap.remove(fifoQueue.poll());
+		if (depth < 0) {
+			throw new IllegalArgumentException("negative depth " + depth);
 		}
-		assert (hashMap.size() <= fifoQueue.size());
+		// a deeper search is at least as reliable, so it must not overflow into the
+		// generation
+		depth = Math.min(depth, MAX_DEPTH);
+		final int bucket = bucket(key);
+		final long verification = verification(key);
+		int slot = -1;
+		for (int s = bucket; s < bucket + 2 && slot < 0; ++s) {
+			final long entry = entries.getAcquire(s);
+			if (!isEmpty(entry) && (entry & VERIFICATION_MASK) == verification) {
+				slot = s;
+				if (bestMove == PackedMove.NONE) {
+					// keep the move of a previous search
+					bestMove = getBestMove(entry);
+				}
+			}
+		}
+		if (slot < 0) {
+			slot = bucket;
+			if (getReplacementPriority(entries.getAcquire(bucket + 1)) < getReplacementPriority(
+					entries.getAcquire(bucket))) {
+				slot = bucket + 1;
+			}
+		}
+		entries.setRelease(slot, 0L);
+		values.setRelease(slot, value);
+		entries.setRelease(slot, verification | ((bestMove & MOVE_MASK) << MOVE_SHIFT)
+				| ((long) (bound.ordinal() + 1) << BOUND_SHIFT) | ((long) depth << DEPTH_SHIFT)
+				| ((long) generation << GENERATION_SHIFT));
+	}
+
+	/**
+	 * @return lowest for the entry to be replaced first, i.e. an empty one, then
+	 *         one of an older search, then the shallower one
+	 */
+	private int getReplacementPriority(long entry) {
+		if (isEmpty(entry)) {
+			return Integer.MIN_VALUE;
+		}
+		// entries are never cleared, but age until they are replaced
+		final int age = (int) ((generation - getGeneration(entry)) & GENERATION_MASK);
+		return age == 0 ? (int) DEPTH_MASK + 1 + getDepth(entry) : getDepth(entry) - 2 * age;
+	}
+
+	/**
+	 * Marks the entries stored from now on as belonging to a new search, so that
+	 * they are preferred to the entries of previous searches.
+	 */
+	public void newSearch() {
+		generation = (int) ((generation + 1) & GENERATION_MASK);
+		cacheHits = 0L;
+		cacheMisses = 0L;
 	}
 
 	public void clear() {
-		hashMap.clear();
-		fifoQueue.clear();
+		for (int slot = 0; slot < entries.length(); ++slot) {
+			entries.set(slot, 0L);
+			values.set(slot, null);
+		}
+		generation = 0;
 		cacheHits = 0L;
+		cacheMisses = 0L;
+	}
+
+	/**
+	 * @return the number of entries the table can hold
+	 */
+	public int getCapacity() {
+		return entries.length();
 	}
 
 	public long getCacheHits() {
@@ -16,6 +16,18 @@ public interface Value extends Comparable<Value> {
 
 	boolean isMax();
 
+	/**
+	 * @return the value from the perspective of the opponent, i.e. the order of
+	 *         all values is reversed
+	 */
+	Value negate();
+
+	/**
+	 * @return the smallest value greater than this one, which allows for null
+	 *         windows
+	 */
+	Value next();
+
 	BoardPosition getBoardPosition();
 
 	void setBoardPosition(BoardPosition boardPosition);
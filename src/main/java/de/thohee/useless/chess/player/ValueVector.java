@@ -126,6 +126,55 @@ class ValueVector extends ArrayList<Integer> implements Value {
 		}
 	}
 
+	@Override
+	public Value negate() {
+		if (isInvalid()) {
+			return createInvalid();
+		}
+		ValueVector negated = isMin() ? createMax() : isMax() ? createMin() : new ValueVector();
+		for (Integer v : this) {
+			// unlike -v this is an order reversing bijection of the ints
+			negated.add(~v);
+		}
+		negated.boardPosition = boardPosition;
+		return negated;
+	}
+
+	@Override
+	public Value next() {
+		assert (!isInvalid() && !isMin() && !isMax());
+		ValueVector next = new ValueVector();
+		next.addAll(this);
+		for (int i = size() - 1; i >= 0; --i) {
+			if (next.get(i) < Integer.MAX_VALUE) {
+				next.set(i, next.get(i) + 1);
+				return next;
+			}
+			next.set(i, Integer.MIN_VALUE);
+		}
+		return createMax();
+	}
+
+	/**
+	 * @return the lowest (negative delta) or the highest value, whose more
+	 *         significant components equal those of this one and whose given
+	 *         component differs by delta
+	 */
+	ValueVector offset(int component, int delta) {
+		assert (!isInvalid() && !isMin() && !isMax() && 0 <= component && component < size());
+		ValueVector offset = new ValueVector();
+		for (int i = 0; i < size(); ++i) {
+			if (i < component) {
+				offset.add(get(i));
+			} else if (i == component) {
+				offset.add((int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, (long) get(i) + delta)));
+			} else {
+				offset.add(delta < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+			}
+		}
+		return offset;
+	}
+
 	@Override
 	public boolean isMin() {
 		return min;
@@ -135,4 +184,4 @@ class ValueVector extends ArrayList<Integer> implements Value {
 	public boolean isMax() {
 		return max;
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
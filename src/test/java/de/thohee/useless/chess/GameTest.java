@@ -131,6 +131,7 @@ public class GameTest {
 			commandStream.sendCommand("uci");
 			assertTrue(getResponse(answerStream).startsWith("id name"));
 			assertTrue(getResponse(answerStream).startsWith("id author"));
+			assertTrue(getResponse(answerStream).startsWith("option name Threads"));
 			assertTrue(getResponse(answerStream).startsWith("uciok"));
 			commandStream.sendCommand("isready");
 			assertTrue(getResponse(answerStream).startsWith("readyok"));
@@ -175,6 +176,43 @@ public class GameTest {
 		}
 	}
 
+	@Test
+	public void testInvalidThreadsOption() throws Exception {
+
+		CommandStream commandStream = new CommandStream();
+		AnswerStream answerStream = new AnswerStream();
+
+		Game game = new Game(commandStream, new PrintStream(answerStream),
+				Game.createPlayerConfiguration(ReadyPlayer1.class.getSimpleName()));
+
+		Thread gameThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				game.playUciGame();
+			}
+		});
+
+		try {
+			gameThread.start();
+			commandStream.sendCommand("uci");
+			assertTrue(getResponse(answerStream).startsWith("id name"));
+			assertTrue(getResponse(answerStream).startsWith("id author"));
+			assertTrue(getResponse(answerStream).startsWith("option name Threads"));
+			assertTrue(getResponse(answerStream).startsWith("uciok"));
+			for (String value : new String[] { "many", "0" }) {
+				commandStream.sendCommand("setoption name Threads value " + value);
+				String answer = answerStream.popLine(500L);
+				assertTrue(answer, answer.startsWith("info string Invalid value " + value));
+				// the game goes on
+				commandStream.sendCommand("isready");
+				assertTrue(getResponse(answerStream).startsWith("readyok"));
+			}
+		} finally {
+			commandStream.sendCommand("quit");
+			gameThread.join();
+		}
+	}
+
 	@Test
 	public void testAvoidInvalidChoice() throws Exception {
 
@@ -197,6 +235,7 @@ public class GameTest {
 			commandStream.sendCommand("uci");
 			assertTrue(getResponse(answerStream).startsWith("id name"));
 			assertTrue(getResponse(answerStream).startsWith("id author"));
+			assertTrue(getResponse(answerStream).startsWith("option name Threads"));
 			assertTrue(getResponse(answerStream).startsWith("uciok"));
 			commandStream.sendCommand("isready");
 			assertTrue(getResponse(answerStream).startsWith("readyok"));
@@ -234,6 +273,7 @@ public class GameTest {
 			commandStream.sendCommand("uci");
 			assertTrue(getResponse(answerStream).startsWith("id name"));
 			assertTrue(getResponse(answerStream).startsWith("id author"));
+			assertTrue(getResponse(answerStream).startsWith("option name Threads"));
 			assertTrue(getResponse(answerStream).startsWith("uciok"));
 			commandStream.sendCommand("isready");
 			assertTrue(getResponse(answerStream).startsWith("readyok"));
@@ -271,6 +311,7 @@ public class GameTest {
 			commandStream.sendCommand("uci");
 			assertTrue(getResponse(answerStream).startsWith("id name"));
 			assertTrue(getResponse(answerStream).startsWith("id author"));
+			assertTrue(getResponse(answerStream).startsWith("option name Threads"));
 			assertTrue(getResponse(answerStream).startsWith("uciok"));
 			commandStream.sendCommand("isready");
 			assertTrue(getResponse(answerStream).startsWith("readyok"));
@@ -307,6 +348,7 @@ public class GameTest {
 			commandStream.sendCommand("uci");
 			assertTrue(getResponse(answerStream).startsWith("id name"));
 			assertTrue(getResponse(answerStream).startsWith("id author"));
+			assertTrue(getResponse(answerStream).startsWith("option name Threads"));
 			assertTrue(getResponse(answerStream).startsWith("uciok"));
 			commandStream.sendCommand("isready");
 			assertTrue(getResponse(answerStream).startsWith("readyok"));
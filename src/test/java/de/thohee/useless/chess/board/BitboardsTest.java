@@ -0,0 +1,50 @@
+package de.thohee.useless.chess.board;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BitboardsTest {
+
+	@Test
+	public void testSquares() {
+		for (Coordinate coordinate : Coordinate.values()) {
+			int square = Bitboards.square(coordinate.getColumn(), coordinate.getRow());
+			assertEquals(coordinate.ordinal(), square);
+			assertEquals(coordinate, Coordinate.get(square));
+			assertEquals(coordinate.getColumn(), Bitboards.column(square));
+			assertEquals(coordinate.getRow(), Bitboards.row(square));
+		}
+		assertEquals(0L, Bitboards.bit(-1, 0));
+		assertEquals(0L, Bitboards.bit(0, 8));
+		assertTrue(Bitboards.contains(Bitboards.ROW_1, Coordinate.h1.ordinal()));
+		assertTrue(Bitboards.contains(Bitboards.COLUMN_A, Coordinate.a8.ordinal()));
+	}
+
+	@Test
+	public void testAttacks() {
+		assertEquals(2, Bitboards.count(Bitboards.knightAttacks(Coordinate.a1.ordinal())));
+		assertEquals(8, Bitboards.count(Bitboards.knightAttacks(Coordinate.d4.ordinal())));
+		assertEquals(3, Bitboards.count(Bitboards.kingAttacks(Coordinate.h8.ordinal())));
+		assertEquals(8, Bitboards.count(Bitboards.kingAttacks(Coordinate.e5.ordinal())));
+		assertEquals(Bitboards.bit(Coordinate.d3) | Bitboards.bit(Coordinate.f3),
+				Bitboards.pawnAttacks(Colour.White, Coordinate.e2.ordinal()));
+		assertEquals(Bitboards.bit(Coordinate.g6), Bitboards.pawnAttacks(Colour.Black, Coordinate.h7.ordinal()));
+		for (Colour colour : Colour.values()) {
+			long allAttacks = 0L;
+			for (int square = 0; square < 64; ++square) {
+				assertEquals(Bitboards.pawnAttacks(colour, square), Bitboards.pawnAttacks(colour, Bitboards.bit(square)));
+				allAttacks |= Bitboards.pawnAttacks(colour, square);
+			}
+			assertEquals(allAttacks, Bitboards.pawnAttacks(colour, ~Bitboards.EMPTY));
+		}
+		assertEquals(14, Bitboards.count(Bitboards.rookAttacks(Coordinate.d4.ordinal(), 0L)));
+		assertEquals(13, Bitboards.count(Bitboards.bishopAttacks(Coordinate.d4.ordinal(), 0L)));
+		long blocker = Bitboards.bit(Coordinate.d6);
+		long rookAttacks = Bitboards.rookAttacks(Coordinate.d4.ordinal(), blocker);
+		assertTrue(Bitboards.contains(rookAttacks, Coordinate.d6.ordinal()));
+		assertEquals(0L, rookAttacks & (Bitboards.bit(Coordinate.d7) | Bitboards.bit(Coordinate.d8)));
+	}
+
+}
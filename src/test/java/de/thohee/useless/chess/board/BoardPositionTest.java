@@ -2,6 +2,7 @@ package de.thohee.useless.chess.board;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -14,6 +15,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -787,4 +789,133 @@ public class BoardPositionTest {
 		assertTrue(boardPosition.canCaptureEnPassant());
 		boardPosition = boardPosition.performMove(PGNParser.parseMove(boardPosition, "f6"));
 	}
+
+	@Test
+	public void testMakeAndUnmakeMove() throws FileNotFoundException, IllegalMoveFormatException {
+		List<Move> moves = PositionLoader.loadPosition("ReadyPlayer1againstHimself3foldRepetitionStillNotAvoided.pgn")
+				.getPerformedMoves();
+		final BoardPosition initialPosition = BoardPosition.getInitialPosition();
+		BoardPosition boardPosition = initialPosition;
+		BoardPosition searchPosition = boardPosition.createSearchPosition();
+		for (Move move : moves) {
+			List<Move> possibleMoves = boardPosition.getPossibleMoves();
+			assertEquals(possibleMoves, searchPosition.getPossibleMoves());
+			for (Move possibleMove : possibleMoves) {
+				BoardPosition expected = boardPosition.performMove(possibleMove);
+				searchPosition.makeMove(possibleMove);
+				assertEquals(expected, searchPosition);
+				assertEquals(expected.getZobristHash(), searchPosition.getZobristHash());
+				assertEquals(expected.getAllPossibleMoves(), searchPosition.getAllPossibleMoves());
+				assertEquals(expected.getNumberOfRepetitions(), searchPosition.getNumberOfRepetitions());
+				assertEquals(expected.hasCastled(move.getColour()), searchPosition.hasCastled(move.getColour()));
+				searchPosition.unmakeMove();
+				assertEquals(boardPosition, searchPosition);
+				assertEquals(boardPosition.getPerformedMoves(), searchPosition.getPerformedMoves());
+				assertEquals(boardPosition.getZobristHash(), searchPosition.getZobristHash());
+			}
+			boardPosition = boardPosition.performMove(move);
+			searchPosition.makeMove(move);
+			assertEquals(boardPosition.getNumberOfRepetitions(), searchPosition.getNumberOfRepetitions());
+		}
+		assertEquals(boardPosition.isThreeFoldRepetition(), searchPosition.isThreeFoldRepetition());
+		for (int i = 0; i < moves.size(); ++i) {
+			searchPosition.unmakeMove();
+		}
+		assertEquals(initialPosition, searchPosition);
+		assertTrue(searchPosition.getPerformedMoves().isEmpty());
+	}
+
+	private static BoardPosition play(BoardPosition boardPosition, String... moves) throws Exception {
+		for (String move : moves) {
+			boardPosition = boardPosition.performUciMove(move);
+		}
+		return boardPosition;
+	}
+
+	@Test
+	public void testZobristHash() throws Exception {
+		BoardPosition initialPosition = BoardPosition.getInitialPosition();
+		// same position reached by different move orders
+		assertEquals(initialPosition.getZobristHash(),
+				play(initialPosition, "g1f3", "g8f6", "f3g1", "f6g8").getZobristHash());
+		assertEquals(play(initialPosition, "e2e3", "e7e6", "d2d3").getZobristHash(),
+				play(initialPosition, "d2d3", "e7e6", "e2e3").getZobristHash());
+		// same pieces, but different side to move
+		assertNotEquals(play(initialPosition, "g1f3", "g8f6", "f3g1").getZobristHash(),
+				play(initialPosition, "g1f3", "g8f6", "f3g1", "f6g8", "b1c3", "b8c6", "c3b1").getZobristHash());
+		// en passant capture possible in one of them only
+		BoardPosition enPassant = play(initialPosition, "e2e4", "a7a6", "e4e5", "d7d5");
+		assertTrue(enPassant.canCaptureEnPassant());
+		assertNotEquals(enPassant.getZobristHash(),
+				play(initialPosition, "e2e4", "d7d6", "e4e5", "a7a6", "g1f3", "d6d5", "f3g1").getZobristHash());
+		// no en passant capture possible
+		assertEquals(play(initialPosition, "e2e4", "a7a5").getZobristHash(),
+				play(initialPosition, "e2e3", "a7a6", "e3e4", "a6a5").getZobristHash());
+		// castling rights lost by moving the rook
+		assertNotEquals(play(initialPosition, "g1f3", "g8f6", "h1g1", "f6g8", "g1h1", "g8f6").getZobristHash(),
+				play(initialPosition, "g1f3", "g8f6").getZobristHash());
+	}
+
+	@Test
+	public void testMakeNullMove() throws Exception {
+		BoardPosition initialPosition = BoardPosition.getInitialPosition();
+		BoardPosition boardPosition = play(initialPosition, "e2e4", "d7d5", "e4e5", "f7f5");
+		BoardPosition searchPosition = boardPosition.createSearchPosition();
+		assertTrue(searchPosition.canCaptureEnPassant());
+		searchPosition.makeNullMove();
+		assertEquals(Colour.Black, searchPosition.getColourToMove());
+		assertFalse(searchPosition.canCaptureEnPassant());
+		assertEquals(boardPosition.getDepth() + 1, searchPosition.getDepth());
+		// the same pieces with black to move after the white queen lost a tempo
+		BoardPosition expected = play(boardPosition, "d1e2", "g8f6", "e2f3", "f6g8", "f3d1");
+		assertEquals(expected.getZobristHash(), searchPosition.getZobristHash());
+		assertEquals(expected.getAllPossibleMoves(), searchPosition.getAllPossibleMoves());
+		searchPosition.unmakeMove();
+		assertEquals(boardPosition, searchPosition);
+		assertEquals(boardPosition.getZobristHash(), searchPosition.getZobristHash());
+		assertEquals(boardPosition.getPossibleMoves(), searchPosition.getPossibleMoves());
+	}
+
+	@Test
+	public void testLegalMovesWithoutPerformingThem() {
+		Random random = new Random(4711L);
+		for (int game = 0; game < 50; ++game) {
+			BoardPosition boardPosition = BoardPosition.getInitialPosition();
+			while (!boardPosition.getPossibleMoves().isEmpty() && boardPosition.getDepth() < 300) {
+				final BoardPosition position = boardPosition;
+				Set<Move> expected = position.getAllPossibleMoves().stream()
+						.filter(m -> !position.justPerformMove(m).isStillCheck()).collect(Collectors.toSet());
+				List<Move> possibleMoves = position.getPossibleMoves();
+				assertEquals(position.toString(), expected, new HashSet<>(possibleMoves));
+				boardPosition = position.performMove(possibleMoves.get(random.nextInt(possibleMoves.size())));
+			}
+		}
+	}
+
+	@Test
+	public void testAttacks() {
+		BoardPosition initialPosition = BoardPosition.getInitialPosition();
+		assertEquals(Bitboards.bit(Coordinate.e2) | Bitboards.bit(Coordinate.g2) | Bitboards.bit(Coordinate.g1),
+				initialPosition.getAttackersTo(Coordinate.f3, Colour.White));
+		assertEquals(8, Bitboards.count(initialPosition.getAttacks(Colour.Black) & (Bitboards.ROW_1 << 5)));
+		assertEquals(0L, initialPosition.getAttacks(Colour.White) & (Bitboards.ROW_1 << 3));
+
+		Random random = new Random(4711L);
+		for (int game = 0; game < 20; ++game) {
+			BoardPosition boardPosition = BoardPosition.getInitialPosition();
+			while (!boardPosition.getPossibleMoves().isEmpty() && boardPosition.getDepth() < 200) {
+				for (Colour colour : Colour.values()) {
+					long attacks = 0L;
+					for (Coordinate coordinate : Coordinate.values()) {
+						if (boardPosition.getAttackersTo(coordinate, colour) != 0L) {
+							attacks |= Bitboards.bit(coordinate);
+						}
+					}
+					assertEquals(boardPosition.toString(), attacks, boardPosition.getAttacks(colour));
+				}
+				List<Move> possibleMoves = boardPosition.getPossibleMoves();
+				boardPosition = boardPosition.performMove(possibleMoves.get(random.nextInt(possibleMoves.size())));
+			}
+		}
+	}
 }
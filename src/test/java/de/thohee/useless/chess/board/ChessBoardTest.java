@@ -100,4 +100,24 @@ public class ChessBoardTest {
 		assertEquals(chessBoard.hashCode(), equivalentChessBoard.hashCode());
 		assertEquals(chessBoard, equivalentChessBoard);
 	}
+
+	@Test
+	public void testBitboards() {
+		ChessBoard chessBoard = new ChessBoard();
+		chessBoard.put(Coordinate.a1, new Piece(Colour.White, Figure.Rook));
+		chessBoard.put(Coordinate.e3, new Piece(Colour.White, Figure.Queen));
+		chessBoard.put(Coordinate.g8, new Piece(Colour.Black, Figure.Rook));
+		assertEquals(Bitboards.bit(Coordinate.a1), chessBoard.getBitboard(Colour.White, Figure.Rook));
+		assertEquals(Bitboards.bit(Coordinate.g8), chessBoard.getBitboard(Colour.Black, Figure.Rook));
+		assertEquals(Bitboards.bit(Coordinate.a1) | Bitboards.bit(Coordinate.e3),
+				chessBoard.getOccupancy(Colour.White));
+		// replacing a piece updates the bitboards of both figures
+		chessBoard.put(Coordinate.e3, new Piece(Colour.Black, Figure.Knight));
+		assertEquals(0L, chessBoard.getBitboard(Colour.White, Figure.Queen));
+		assertEquals(Bitboards.bit(Coordinate.e3), chessBoard.getBitboard(Colour.Black, Figure.Knight));
+		assertEquals(3, chessBoard.size());
+		chessBoard.remove(Coordinate.a1);
+		assertEquals(0L, chessBoard.getOccupancy(Colour.White));
+		assertEquals(2, Long.bitCount(chessBoard.getOccupancy()));
+	}
 }
@@ -1,7 +1,9 @@
 package de.thohee.useless.chess.board;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -28,4 +30,21 @@ public class FENParserTest {
 		assertEquals(4, boardPosition.getDepth());
 	}
 
+	@Test
+	public void testParseCastlingsAndEnPassant() {
+		BoardPosition boardPosition = FENParser
+				.parse("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w Kq f6 0 3");
+		System.out.println(boardPosition.toString());
+		assertEquals(Colour.White, boardPosition.getColourToMove());
+		assertEquals(4, boardPosition.getDepth());
+		assertEquals(4, boardPosition.getCastlingPieces().size());
+		assertTrue(boardPosition.getCastlingPieces().contains(boardPosition.get(Coordinate.h1)));
+		assertTrue(boardPosition.getCastlingPieces().contains(boardPosition.get(Coordinate.a8)));
+		assertFalse(boardPosition.getCastlingPieces().contains(boardPosition.get(Coordinate.a1)));
+		assertTrue(boardPosition.getPossibleMoves()
+				.contains(new Move(Colour.White, Figure.Pawn, Coordinate.e5, Coordinate.f6, Move.Capture.EnPassant)));
+		assertFalse(boardPosition.getPossibleMoves()
+				.contains(new Move(Colour.White, Figure.Pawn, Coordinate.e5, Coordinate.d6, Move.Capture.EnPassant)));
+	}
+
 }
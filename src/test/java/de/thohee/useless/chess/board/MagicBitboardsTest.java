@@ -0,0 +1,27 @@
+package de.thohee.useless.chess.board;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MagicBitboardsTest {
+
+	@Test
+	public void testLookupMatchesRayWalk() {
+		Random random = new Random(4711L);
+		for (int square = 0; square < 64; ++square) {
+			for (int i = 0; i < 1000; ++i) {
+				// sparse and dense occupancies
+				long occupancy = i % 2 == 0 ? random.nextLong() & random.nextLong() : random.nextLong();
+				assertEquals(Bitboards.computeRookAttacks(square, occupancy),
+						MagicBitboards.rookAttacks(square, occupancy));
+				assertEquals(Bitboards.computeBishopAttacks(square, occupancy),
+						MagicBitboards.bishopAttacks(square, occupancy));
+			}
+		}
+		System.out.println("magic bitboards initialized in " + MagicBitboards.getInitializationMillis() + "ms");
+	}
+
+}
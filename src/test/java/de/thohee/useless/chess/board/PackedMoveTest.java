@@ -0,0 +1,86 @@
+package de.thohee.useless.chess.board;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.thohee.useless.chess.board.Move.Capture;
+import de.thohee.useless.chess.board.Move.Castling;
+
+public class PackedMoveTest {
+
+	private static void assertRoundTrip(Move move) {
+		int packedMove = PackedMove.of(move);
+		assertNotEquals(PackedMove.NONE, packedMove);
+		assertEquals(move, PackedMove.toMove(packedMove));
+		assertEquals(move.asUciMove(), PackedMove.asUciMove(packedMove));
+		assertEquals(move.getColour(), PackedMove.getColour(packedMove));
+	}
+
+	@Test
+	public void testRoundTrip() {
+		for (Colour colour : Colour.values()) {
+			for (Castling castling : Castling.values()) {
+				assertRoundTrip(new Move(colour, castling));
+			}
+			for (Figure figure : Figure.values()) {
+				for (Capture capture : Capture.values()) {
+					assertRoundTrip(new Move(colour, figure, Coordinate.a1, Coordinate.h8, capture));
+					assertRoundTrip(new Move(colour, figure, Coordinate.h8, Coordinate.a1, capture));
+				}
+			}
+			for (Figure newFigure : Arrays.asList(Figure.Queen, Figure.Rook, Figure.Bishop, Figure.Knight)) {
+				assertRoundTrip(new Move(colour, Figure.Pawn, Coordinate.b7, Coordinate.a8, Capture.Regular, newFigure));
+				assertRoundTrip(new Move(colour, Figure.Pawn, Coordinate.b2, Coordinate.b1, Capture.None, newFigure));
+			}
+		}
+	}
+
+	@Test
+	public void testNullMove() {
+		for (Colour colour : Colour.values()) {
+			final int nullMove = PackedMove.nullMove(colour);
+			assertNotEquals(PackedMove.NONE, nullMove);
+			assertTrue(PackedMove.isNullMove(nullMove));
+			assertEquals(colour, PackedMove.getColour(nullMove));
+			assertFalse(PackedMove.isCapture(nullMove) || PackedMove.isPromotion(nullMove)
+					|| PackedMove.isCastling(nullMove));
+			assertFalse(PackedMove.isNullMove(PackedMove.of(colour, Castling.KingSide)));
+		}
+	}
+
+	@Test
+	public void testAllPossibleMoves() throws Exception {
+		BoardPosition boardPosition = PositionLoader
+				.loadPosition("ReadyPlayer1againstHimself3foldRepetitionStillNotAvoided.pgn");
+		for (Move move : boardPosition.getPerformedMoves()) {
+			assertRoundTrip(move);
+		}
+		MoveList moves = boardPosition.getAllPossiblePackedMoves();
+		for (int i = 0; i < moves.size(); ++i) {
+			assertEquals(moves.get(i), PackedMove.of(PackedMove.toMove(moves.get(i))));
+		}
+	}
+
+	@Test
+	public void testSort() {
+		MoveList moves = new MoveList(1);
+		for (int move = 1; move <= 100; ++move) {
+			moves.add(move);
+		}
+		assertEquals(100, moves.size());
+		// descending by remainder, ascending within equal remainder
+		moves.sort(m -> m % 3);
+		for (int i = 1; i < moves.size(); ++i) {
+			int previous = moves.get(i - 1);
+			int current = moves.get(i);
+			assertTrue(previous % 3 > current % 3 || (previous % 3 == current % 3 && previous < current));
+		}
+	}
+
+}
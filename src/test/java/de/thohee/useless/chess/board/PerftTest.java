@@ -0,0 +1,51 @@
+package de.thohee.useless.chess.board;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.thohee.useless.chess.board.Perft.ReferencePosition;
+
+public class PerftTest {
+
+	// keeps the test fast enough to be run with every build
+	private static final long MAX_NODES = 1_000_000L;
+
+	@Test
+	public void testReferencePositions() {
+		Perft perft = new Perft();
+		for (ReferencePosition referencePosition : ReferencePosition.values()) {
+			for (int depth = 1; depth <= referencePosition.getMaxDepth()
+					&& referencePosition.getNodes(depth) <= MAX_NODES; ++depth) {
+				assertEquals(referencePosition + " depth " + depth, referencePosition.getNodes(depth),
+						perft.perft(referencePosition.createPosition(), depth));
+			}
+		}
+	}
+
+	@Test
+	public void testDivide() {
+		BoardPosition boardPosition = ReferencePosition.Kiwipete.createPosition();
+		Map<Move, Long> divide = new Perft().divide(boardPosition, 2);
+		assertEquals(ReferencePosition.Kiwipete.getNodes(1), divide.size());
+		assertEquals(ReferencePosition.Kiwipete.getNodes(2), divide.values().stream().mapToLong(n -> n).sum());
+		for (Map.Entry<Move, Long> entry : divide.entrySet()) {
+			assertEquals(entry.getKey().toString(),
+					boardPosition.performMove(entry.getKey()).getPossibleMoves().size(), entry.getValue().longValue());
+		}
+	}
+
+	@Test
+	public void testThreadsAndHash() {
+		final int depth = 3;
+		for (ReferencePosition referencePosition : ReferencePosition.values()) {
+			final long expected = referencePosition.getNodes(depth);
+			assertEquals(expected, new Perft(4, 0).perft(referencePosition.createPosition(), depth));
+			assertEquals(expected, new Perft(1, 1).perft(referencePosition.createPosition(), depth));
+			assertEquals(expected, new Perft(4, 1).perft(referencePosition.createPosition(), depth));
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+package de.thohee.useless.chess.board;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import de.thohee.useless.chess.board.Move.Capture;
+
+public class StaticExchangeTest {
+
+	// pawn, knight, bishop, rook and queen in units of pawns
+	private static final StaticExchange staticExchange = new StaticExchange(new int[] { 0, 9, 5, 3, 3, 1 });
+
+	private static int move(Colour colour, Figure figure, Coordinate from, Coordinate to, Capture capture) {
+		return PackedMove.of(colour, figure, from.ordinal(), to.ordinal(), capture);
+	}
+
+	@Test
+	public void testUnprotected() {
+		BoardPosition boardPosition = FENParser.parse("1k1r4/1pp4p/p7/4p3/8/P5P1/1PP4P/2K1R3 w - - 0 1");
+		assertEquals(1, staticExchange.evaluate(boardPosition,
+				move(Colour.White, Figure.Rook, Coordinate.e1, Coordinate.e5, Capture.Regular)));
+		assertEquals(1, staticExchange.evaluate(boardPosition, Coordinate.e5.ordinal(), Colour.White));
+		// black cannot capture on e5
+		assertEquals(0, staticExchange.evaluate(boardPosition, Coordinate.e5.ordinal(), Colour.Black));
+	}
+
+	@Test
+	public void testXRays() {
+		BoardPosition boardPosition = FENParser.parse("1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3 w - - 0 1");
+		// NxP BxN RxB NxR and the queen behind the bishop would win the white queen
+		assertEquals(-2, staticExchange.evaluate(boardPosition,
+				move(Colour.White, Figure.Knight, Coordinate.d3, Coordinate.e5, Capture.Regular)));
+		// RxP BxR, after which the knight and the queen cannot get the rook back
+		assertEquals(-4, staticExchange.evaluate(boardPosition,
+				move(Colour.White, Figure.Rook, Coordinate.e2, Coordinate.e5, Capture.Regular)));
+	}
+
+	@Test
+	public void testKingCannotCaptureProtectedPiece() {
+		BoardPosition boardPosition = FENParser.parse("8/8/8/3k4/4P3/5P2/8/4K3 b - - 0 1");
+		assertEquals(0, staticExchange.evaluate(boardPosition, Coordinate.e4.ordinal(), Colour.Black));
+		boardPosition = FENParser.parse("8/8/8/3k4/4P3/8/8/4K3 b - - 0 1");
+		assertEquals(1, staticExchange.evaluate(boardPosition, Coordinate.e4.ordinal(), Colour.Black));
+	}
+
+	@Test
+	public void testQuietMove() {
+		BoardPosition boardPosition = FENParser.parse("4k3/8/8/8/3p4/8/8/2B1K3 w - - 0 1");
+		// the bishop would be lost to the pawn
+		assertEquals(-3, staticExchange.evaluate(boardPosition,
+				move(Colour.White, Figure.Bishop, Coordinate.c1, Coordinate.e3, Capture.None)));
+		assertEquals(0, staticExchange.evaluate(boardPosition,
+				move(Colour.White, Figure.Bishop, Coordinate.c1, Coordinate.d2, Capture.None)));
+	}
+
+}
@@ -1,24 +1,41 @@
 package de.thohee.useless.chess.player;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import org.junit.Test;
 
 import de.thohee.useless.chess.board.BoardPosition;
 import de.thohee.useless.chess.board.Colour;
 import de.thohee.useless.chess.board.Coordinate;
+import de.thohee.useless.chess.board.FENParser;
 import de.thohee.useless.chess.board.Figure;
 import de.thohee.useless.chess.board.Move;
 import de.thohee.useless.chess.board.Move.Capture;
+import de.thohee.useless.chess.board.PackedMove;
 import de.thohee.useless.chess.board.Piece;
+import de.thohee.useless.chess.board.PositionLoader;
 import de.thohee.useless.chess.board.PositionedPiece;
+import de.thohee.useless.chess.player.MinimaxPlayer.ParallelSearch;
 import de.thohee.useless.chess.player.Player.Params;
 
 public class MinimaxPlayerTest {
 
+	// a few polls, so that a busy machine does not fail the tests of the stop
+	// latency
+	static final long MAX_STOP_LATENCY_NANOS = 20 * MinimaxPlayer.STOP_POLL_NANOS;
+
 	@Test
 	public void testSupportMate() {
 
@@ -37,4 +54,249 @@ public class MinimaxPlayerTest {
 		assertEquals(new Move(Colour.Black, Figure.Queen, Coordinate.g6, Coordinate.g2, Capture.None), move);
 	}
 
+	@Test
+	public void testRepeatedSearch() {
+		BoardPosition boardPosition = BoardPosition.getInitialPosition();
+		Params params = new Params();
+		params.maxDepthInPlies = 4;
+
+		ReadyPlayer1 player = new ReadyPlayer1(Colour.White, true);
+		player.noOpenings();
+		Move move = player.makeMove(boardPosition, params);
+		// the transposition table knows the value of the root now, but the root
+		// moves are searched again
+		for (int i = 0; i < 2; ++i) {
+			assertEquals(move, player.makeMove(boardPosition, params));
+			assertTrue(player.getVisitedNodes() > 1L);
+			assertTrue(player.getEvaluatedMoves().containsKey(move));
+		}
+	}
+
+	@Test
+	public void testPrincipalVariation() throws Exception {
+		BoardPosition boardPosition = PositionLoader.loadPosition("SiegEnduringSilver.pgn", 14);
+		Params params = new Params();
+		params.maxTimeInMillis = 2000L;
+
+		ReadyPlayer1 player = new ReadyPlayer1(boardPosition.getColourToMove(), true);
+		player.noOpenings();
+		Move move = player.makeMove(boardPosition, params);
+		int[] principalVariation = player.getPrincipalVariation();
+		System.out.println(move + " " + Arrays.toString(principalVariation));
+		// the latest iteration may have been interrupted before it found a better move
+		assertTrue(principalVariation.length > 0);
+		BoardPosition position = boardPosition;
+		for (int packedMove : principalVariation) {
+			Move pvMove = PackedMove.toMove(packedMove);
+			assertTrue(pvMove.toString(), position.getPossibleMoves().contains(pvMove));
+			position = position.performMove(pvMove);
+		}
+	}
+
+	@Test
+	public void testStopLatency() throws Exception {
+		BoardPosition boardPosition = PositionLoader.loadPosition("SiegEnduringSilver.pgn", 14);
+		Params params = new Params();
+		params.infinite = true;
+
+		ReadyPlayer1 player = new ReadyPlayer1(boardPosition.getColourToMove(), true);
+		player.noOpenings();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Move> move = executor.submit(() -> player.makeMove(boardPosition, params));
+			Thread.sleep(500L);
+			player.stop();
+			assertTrue(move.get() != null);
+		} finally {
+			executor.shutdown();
+		}
+		// the interval adapted to the speed of the search, so that the polls are only
+		// about STOP_POLL_NANOS apart and the search stops within a few of them
+		assertTrue(Integer.toString(player.getPollInterval()),
+				player.getPollInterval() > MinimaxPlayer.MIN_POLL_INTERVAL);
+		assertTrue(player.getStopLatencyNanos() + "ns", player.getStopLatencyNanos() < MAX_STOP_LATENCY_NANOS);
+	}
+
+	@Test
+	public void testDeadline() throws Exception {
+		BoardPosition boardPosition = PositionLoader.loadPosition("SiegEnduringSilver.pgn", 14);
+		Params params = new Params();
+		params.maxTimeInMillis = 500L;
+
+		ReadyPlayer1 player = new ReadyPlayer1(boardPosition.getColourToMove(), true);
+		player.noOpenings();
+		player.makeMove(boardPosition, params);
+		assertTrue(player.getStopLatencyNanos() != null);
+		assertTrue(player.getStopLatencyNanos() + "ns", player.getStopLatencyNanos() < MAX_STOP_LATENCY_NANOS);
+
+		// a search of fixed depth is not stopped
+		params = new Params();
+		params.maxDepthInPlies = 2;
+		player.makeMove(boardPosition, params);
+		assertTrue(player.getStopLatencyNanos() == null);
+	}
+
+	@Test
+	public void testTinyEndgame() throws Exception {
+		// so few moves are possible, that the search deepens far beyond the depth of
+		// ordinary positions
+		BoardPosition boardPosition = FENParser.parse("8/8/8/4k3/8/8/4K3/7R w - - 99 80");
+		// the moves are analyzed before the clock starts
+		boardPosition.getPossibleMoves();
+		Params params = new Params();
+		params.maxTimeInMillis = 1000L;
+
+		ReadyPlayer1 player = new ReadyPlayer1(boardPosition.getColourToMove(), true);
+		player.noOpenings();
+		Move move = player.makeMove(boardPosition, params);
+		assertTrue(boardPosition.getPossibleMoves().contains(move));
+		// each move draws by the fifty-move rule, which no deeper iteration changes,
+		// so the search ends before its deadline
+		assertTrue(player.getStopLatencyNanos() == null);
+		assertTrue(player.getMaxDepth().toString(), player.getMaxDepth() < MinimaxPlayer.MAX_DEPTH);
+
+		// an infinite search returns its move only when asked to
+		Params infiniteParams = new Params();
+		infiniteParams.infinite = true;
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Move> infiniteMove = executor.submit(() -> player.makeMove(boardPosition, infiniteParams));
+			Thread.sleep(500L);
+			assertFalse(infiniteMove.isDone());
+			player.stop();
+			assertTrue(boardPosition.getPossibleMoves().contains(infiniteMove.get()));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testPrincipalVariationSearch() throws Exception {
+		BoardPosition boardPosition = PositionLoader.loadPosition("SiegEnduringSilver.pgn", 14);
+		Params params = new Params();
+		params.maxDepthInPlies = 4;
+
+		ReadyPlayer1 alphaBetaPlayer = new ReadyPlayer1(boardPosition.getColourToMove(), false);
+		alphaBetaPlayer.noOpenings();
+		alphaBetaPlayer.setPrincipalVariationSearch(false);
+		alphaBetaPlayer.makeMove(boardPosition, params);
+
+		ReadyPlayer1 player = new ReadyPlayer1(boardPosition.getColourToMove(), false);
+		player.noOpenings();
+		player.makeMove(boardPosition, params);
+		// the null windows only prune moves, which are not better anyway
+		assertEquals(Collections.max(alphaBetaPlayer.getEvaluatedMoves().values()),
+				Collections.max(player.getEvaluatedMoves().values()));
+	}
+
+	/**
+	 * Lets a player, which is set up by the given setup, search the position of
+	 * SiegEnduringSilver.pgn after 14 plies, in which only a few moves avoid a
+	 * looming checkmate.
+	 *
+	 * @return the player after the search
+	 */
+	static ReadyPlayer1 assertAvoidsLoomingCheckMate(boolean useTranspositionTable, Consumer<ReadyPlayer1> setup,
+			Params params) throws Exception {
+		BoardPosition boardPosition = PositionLoader.loadPosition("SiegEnduringSilver.pgn", 14);
+		Set<Move> avoidingMoves = new HashSet<>();
+		for (String move : new String[] { "g1h3", "d1c2", "d1d2", "d1d3" }) {
+			avoidingMoves.add(boardPosition.parseUciMove(move));
+		}
+		ReadyPlayer1 player = new ReadyPlayer1(boardPosition.getColourToMove(), useTranspositionTable);
+		player.noOpenings();
+		setup.accept(player);
+		Move move = player.makeMove(boardPosition, params);
+		assertTrue(move.asUciMove(), avoidingMoves.contains(move));
+		return player;
+	}
+
+	@Test
+	public void testAspirationWindows() throws Exception {
+		Params params = new Params();
+		params.maxTimeInMillis = 2000L;
+		// the narrow windows must not hide the looming checkmate
+		assertAvoidsLoomingCheckMate(true, player -> {
+		}, params);
+	}
+
+	/**
+	 * Asserts, that a search of the given depth visits fewer nodes with a
+	 * feature than without, which is switched off by the given setup, and still
+	 * avoids the looming checkmate.
+	 */
+	private void assertFewerVisitedNodes(Consumer<ReadyPlayer1> switchOff, int depth) throws Exception {
+		Params params = new Params();
+		params.maxDepthInPlies = depth;
+		ReadyPlayer1 withoutPlayer = assertAvoidsLoomingCheckMate(false, switchOff, params);
+		ReadyPlayer1 player = assertAvoidsLoomingCheckMate(false, p -> {
+		}, params);
+		assertTrue(player.getVisitedNodes() + " >= " + withoutPlayer.getVisitedNodes(),
+				player.getVisitedNodes() < withoutPlayer.getVisitedNodes());
+	}
+
+	@Test
+	public void testNullMovePruning() throws Exception {
+		// passing the turn must not hide the looming checkmate
+		assertFewerVisitedNodes(player -> player.setNullMovePruning(false), 7);
+	}
+
+	@Test
+	public void testLateMoveReductions() throws Exception {
+		// the reduced moves must not hide the looming checkmate
+		assertFewerVisitedNodes(player -> player.setLateMoveReductions(false), 6);
+	}
+
+	@Test
+	public void testFrontierPruning() throws Exception {
+		// the pruned moves must not hide the looming checkmate
+		assertFewerVisitedNodes(player -> player.setFrontierPruning(false), 6);
+	}
+
+	private void assertSameBestValue(ParallelSearch parallelSearch) throws Exception {
+		BoardPosition boardPosition = PositionLoader.loadPosition("SiegEnduringSilver.pgn", 14);
+		Params params = new Params();
+		params.maxDepthInPlies = 4;
+
+		ReadyPlayer1 sequentialPlayer = new ReadyPlayer1(boardPosition.getColourToMove(), false);
+		sequentialPlayer.noOpenings();
+		sequentialPlayer.makeMove(boardPosition, params);
+		Value expected = Collections.max(sequentialPlayer.getEvaluatedMoves().values());
+
+		ReadyPlayer1 parallelPlayer = new ReadyPlayer1(boardPosition.getColourToMove(), false);
+		parallelPlayer.noOpenings();
+		parallelPlayer.setThreads(3);
+		parallelPlayer.setParallelSearch(parallelSearch);
+		parallelPlayer.makeMove(boardPosition, params);
+		parallelPlayer.printEvaluatedChoices(System.out);
+		// the order, in which the moves are searched, does not change the best value
+		assertEquals(expected, Collections.max(parallelPlayer.getEvaluatedMoves().values()));
+	}
+
+	@Test
+	public void testRootSplit() throws Exception {
+		assertSameBestValue(ParallelSearch.RootSplit);
+	}
+
+	@Test
+	public void testYoungBrothersWait() throws Exception {
+		assertSameBestValue(ParallelSearch.YBWC);
+	}
+
+	@Test
+	public void testNestedSplitPoints() throws Exception {
+		BoardPosition boardPosition = PositionLoader.loadPosition("SiegEnduringSilver.pgn", 14);
+		Params params = new Params();
+		params.maxDepthInPlies = 5;
+
+		ReadyPlayer1 player = new ReadyPlayer1(boardPosition.getColourToMove(), false);
+		player.noOpenings();
+		player.setThreads(3);
+		player.setParallelSearch(ParallelSearch.YBWC);
+		player.makeMove(boardPosition, params);
+		// a helper, which searches a node below a split point, splits it itself if
+		// another helper is idle
+		assertTrue(player.getHelperSplitPoints() > 0);
+	}
+
 }
@@ -0,0 +1,62 @@
+package de.thohee.useless.chess.player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.thohee.useless.chess.board.Colour;
+import de.thohee.useless.chess.board.Coordinate;
+import de.thohee.useless.chess.board.Figure;
+import de.thohee.useless.chess.board.Move.Capture;
+import de.thohee.useless.chess.board.PackedMove;
+
+public class MoveHistoryTest {
+
+	private static int move(Colour colour, Figure figure, Coordinate from, Coordinate to, Capture capture) {
+		return PackedMove.of(colour, figure, from.ordinal(), to.ordinal(), capture);
+	}
+
+	@Test
+	public void testUpdate() {
+		final int previousMove = move(Colour.Black, Figure.Knight, Coordinate.g8, Coordinate.f6, Capture.None);
+		final int first = move(Colour.White, Figure.Knight, Coordinate.g1, Coordinate.f3, Capture.None);
+		final int second = move(Colour.White, Figure.Pawn, Coordinate.e2, Coordinate.e4, Capture.None);
+		final int third = move(Colour.White, Figure.Pawn, Coordinate.d2, Coordinate.d4, Capture.None);
+		MoveHistory history = new MoveHistory();
+
+		history.update(100, first, previousMove, 3);
+		history.update(100, second, PackedMove.NONE, 2);
+		history.update(100, second, PackedMove.NONE, 1);
+		assertEquals(second, history.getKiller(100, 0));
+		assertEquals(first, history.getKiller(100, 1));
+		assertEquals(PackedMove.NONE, history.getKiller(99, 0));
+		assertEquals(9, history.getScore(first));
+		assertEquals(5, history.getScore(second));
+		assertEquals(first, history.getCounterMove(previousMove));
+
+		history.update(100, third, previousMove, 0);
+		assertEquals(third, history.getKiller(100, 0));
+		assertEquals(second, history.getKiller(100, 1));
+		assertFalse(history.isKiller(100, first));
+		assertEquals(1, history.getScore(third));
+		assertEquals(third, history.getCounterMove(previousMove));
+
+		history.age();
+		assertFalse(history.isKiller(100, third));
+		assertEquals(4, history.getScore(first));
+		assertEquals(third, history.getCounterMove(previousMove));
+	}
+
+	@Test
+	public void testIgnoreCaptures() {
+		final int capture = move(Colour.White, Figure.Pawn, Coordinate.e4, Coordinate.d5, Capture.Regular);
+		MoveHistory history = new MoveHistory();
+		history.update(0, capture, PackedMove.NONE, 5);
+		assertFalse(history.isKiller(0, capture));
+		assertEquals(0, history.getScore(capture));
+		assertTrue(MoveHistory.isQuiet(move(Colour.Black, Figure.King, Coordinate.e8, Coordinate.e7, Capture.None)));
+	}
+
+}
@@ -0,0 +1,117 @@
+package de.thohee.useless.chess.player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.thohee.useless.chess.board.BoardPosition;
+import de.thohee.useless.chess.board.Colour;
+import de.thohee.useless.chess.board.Coordinate;
+import de.thohee.useless.chess.board.Figure;
+import de.thohee.useless.chess.board.Move;
+import de.thohee.useless.chess.board.Move.Capture;
+import de.thohee.useless.chess.board.Move.IllegalMoveFormatException;
+import de.thohee.useless.chess.board.MoveList;
+import de.thohee.useless.chess.board.PackedMove;
+
+public class MovePickerTest {
+
+	private static int move(Figure figure, Coordinate from, Coordinate to, Capture capture) {
+		return PackedMove.of(Colour.White, figure, from.ordinal(), to.ordinal(), capture);
+	}
+
+	@Test
+	public void testStages() throws IllegalMoveFormatException {
+		BoardPosition boardPosition = BoardPosition.getInitialPosition();
+		for (String move : new String[] { "e2-e4", "d7-d5", "Qd1-h5", "Nb8-c6" }) {
+			boardPosition = boardPosition.performMove(Move.parse(boardPosition.getColourToMove(), move));
+		}
+		System.out.println(boardPosition.toString());
+
+		final int hashMove = move(Figure.Knight, Coordinate.g1, Coordinate.f3, Capture.None);
+		final int goodCapture = move(Figure.Pawn, Coordinate.e4, Coordinate.d5, Capture.Regular);
+		// the queen can be taken back, but then the pawn recaptures
+		final int goodQueenCapture = move(Figure.Queen, Coordinate.h5, Coordinate.d5, Capture.Regular);
+		final int killer = move(Figure.Pawn, Coordinate.a2, Coordinate.a3, Capture.None);
+		final int counterMove = move(Figure.Pawn, Coordinate.h2, Coordinate.h3, Capture.None);
+		final int historyMove = move(Figure.Pawn, Coordinate.b2, Coordinate.b3, Capture.None);
+		final int previousMove = boardPosition.getLastPackedMove();
+		MoveHistory history = new MoveHistory();
+		history.update(4, killer, PackedMove.NONE, 1);
+		// the counter move is also a killer at another depth
+		history.update(3, counterMove, previousMove, 1);
+		history.update(3, historyMove, PackedMove.NONE, 2);
+
+		MovePicker movePicker = new MovePicker(boardPosition, hashMove, history, 4,
+				ReadyPlayer1.createStaticExchange());
+		List<Integer> picked = new ArrayList<>();
+		for (int move = movePicker.next(); move != PackedMove.NONE; move = movePicker.next()) {
+			picked.add(move);
+		}
+
+		MoveList moves = boardPosition.getAllPossiblePackedMoves();
+		assertEquals(moves.size(), picked.size());
+		assertEquals(moves.size(), new HashSet<>(picked).size());
+		for (int i = 0; i < moves.size(); ++i) {
+			assertTrue(picked.contains(moves.get(i)));
+		}
+
+		assertEquals(hashMove, picked.get(0).intValue());
+		assertEquals(goodCapture, picked.get(1).intValue());
+		assertEquals(goodQueenCapture, picked.get(2).intValue());
+		assertEquals(killer, picked.get(3).intValue());
+		assertEquals(counterMove, picked.get(4).intValue());
+		assertEquals(historyMove, picked.get(5).intValue());
+		// the queen capturing pawns protected by the rook and the king comes last
+		for (int i = picked.size() - 2; i < picked.size(); ++i) {
+			assertEquals(Figure.Queen, PackedMove.getFigure(picked.get(i)));
+			assertTrue(PackedMove.isCapture(picked.get(i)));
+		}
+		for (int i = 3; i < picked.size() - 2; ++i) {
+			assertTrue(!PackedMove.isCapture(picked.get(i)));
+		}
+	}
+
+	@Test
+	public void testCapturesOnly() throws IllegalMoveFormatException {
+		BoardPosition boardPosition = BoardPosition.getInitialPosition();
+		for (String move : new String[] { "e2-e4", "d7-d5", "Qd1-h5", "Nb8-c6" }) {
+			boardPosition = boardPosition.performMove(Move.parse(boardPosition.getColourToMove(), move));
+		}
+		// a quiet hash move is not picked
+		final int hashMove = move(Figure.Knight, Coordinate.g1, Coordinate.f3, Capture.None);
+		MovePicker movePicker = new MovePicker(boardPosition, hashMove, ReadyPlayer1.createStaticExchange());
+		List<Integer> picked = new ArrayList<>();
+		for (int move = movePicker.next(); move != PackedMove.NONE; move = movePicker.next()) {
+			picked.add(move);
+		}
+		// the queen capturing protected pawns is left out
+		assertEquals(2, picked.size());
+		assertEquals(move(Figure.Pawn, Coordinate.e4, Coordinate.d5, Capture.Regular), picked.get(0).intValue());
+		assertEquals(move(Figure.Queen, Coordinate.h5, Coordinate.d5, Capture.Regular), picked.get(1).intValue());
+		assertEquals(1, MovePicker.getMaterialGain(boardPosition, picked.get(0)));
+	}
+
+	@Test
+	public void testInvalidHashMove() {
+		BoardPosition boardPosition = BoardPosition.getInitialPosition();
+		// not possible in the initial position
+		final int hashMove = move(Figure.Pawn, Coordinate.e4, Coordinate.e5, Capture.None);
+		MoveHistory history = new MoveHistory();
+		history.update(0, hashMove, PackedMove.NONE, 1);
+		MovePicker movePicker = new MovePicker(boardPosition, hashMove, history, 0,
+				ReadyPlayer1.createStaticExchange());
+		int count = 0;
+		for (int move = movePicker.next(); move != PackedMove.NONE; move = movePicker.next()) {
+			assertTrue(move != hashMove);
+			++count;
+		}
+		assertEquals(20, count);
+	}
+
+}
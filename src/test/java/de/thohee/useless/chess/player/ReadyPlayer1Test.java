@@ -93,6 +93,31 @@ public class ReadyPlayer1Test implements Player.OutputWriter {
 		assertTrue(move.asUciMove(), avoidingMoves.contains(move));
 	}
 
+	@Test
+	public void testDetectLoomingCheckMateWithThreads() throws Exception {
+		Player.Params params = new Player.Params();
+		params.maxDepthInPlies = 2;
+		ReadyPlayer1 player = MinimaxPlayerTest.assertAvoidsLoomingCheckMate(true, p -> p.setThreads(3), params);
+		assertEquals(3, player.getThreads());
+
+		// the helpers stop with the main search and are joined before the move is
+		// returned, which the stop latency includes
+		BoardPosition boardPosition = PositionLoader.loadPosition("SiegEnduringSilver.pgn", 14);
+		params = new Player.Params();
+		params.maxTimeInMillis = 1000L;
+		final long starttime = System.currentTimeMillis();
+		Move move = player.makeMove(boardPosition, params);
+		final long duration = System.currentTimeMillis() - starttime;
+		assertTrue(player.getStopLatencyNanos() != null);
+		assertTrue(player.getStopLatencyNanos() + "ns",
+				player.getStopLatencyNanos() < MinimaxPlayerTest.MAX_STOP_LATENCY_NANOS);
+		assertTrue(Long.toString(duration), duration <= params.maxTimeInMillis);
+		assertTrue(boardPosition.getPossibleMoves().contains(move));
+
+		player.setThreads(1);
+		assertEquals(1, player.getThreads());
+	}
+
 	private BoardPosition playGame(Map<Colour, Player> players, Player.Params params) {
 		BoardPosition boardPosition = BoardPosition.getInitialPosition();
 		int m = 1;
@@ -258,7 +283,7 @@ public class ReadyPlayer1Test implements Player.OutputWriter {
 
 		{
 			// the black pawn is protected by two pieces and threatened by three pieces
-			// which will attack in ascending order of value
+			// in ascending order of value, but the defenders stop before they lose more
 			BoardPosition boardPosition = BoardPosition
 					.createPosition(
 							Arrays.asList(new PositionedPiece(Coordinate.e1, new Piece(Colour.White, Figure.Bishop)),
@@ -268,20 +293,15 @@ public class ReadyPlayer1Test implements Player.OutputWriter {
 									new PositionedPiece(Coordinate.g8, new Piece(Colour.Black, Figure.Rook)),
 									new PositionedPiece(Coordinate.a3, new Piece(Colour.White, Figure.Rook))),
 							Colour.White);
-			assertEquals(
-					ReadyPlayer1.getValue(Figure.Pawn) + ReadyPlayer1.getValue(Figure.Rook)
-							- ReadyPlayer1.getValue(Figure.Bishop),
-					whitePlayer1.evaluateThreatsAndProtections(boardPosition));
-			assertEquals(
-					-1 * (ReadyPlayer1.getValue(Figure.Pawn) + ReadyPlayer1.getValue(Figure.Rook)
-							- ReadyPlayer1.getValue(Figure.Bishop)),
+			assertEquals(ReadyPlayer1.getValue(Figure.Pawn), whitePlayer1.evaluateThreatsAndProtections(boardPosition));
+			assertEquals(-1 * ReadyPlayer1.getValue(Figure.Pawn),
 					blackPlayer1.evaluateThreatsAndProtections(boardPosition));
 		}
 
 		{
 
 			// the white pawn is protected by two pieces and threatened by three pieces
-			// which will attack in ascending order of value
+			// in ascending order of value, but the defenders stop before they lose more
 			BoardPosition boardPosition = BoardPosition
 					.createPosition(
 							Arrays.asList(new PositionedPiece(Coordinate.e1, new Piece(Colour.Black, Figure.Bishop)),
@@ -291,20 +311,16 @@ public class ReadyPlayer1Test implements Player.OutputWriter {
 									new PositionedPiece(Coordinate.g8, new Piece(Colour.White, Figure.Rook)),
 									new PositionedPiece(Coordinate.a3, new Piece(Colour.Black, Figure.Rook))),
 							Colour.White);
-			assertEquals(
-					-1 * (ReadyPlayer1.getValue(Figure.Pawn) + ReadyPlayer1.getValue(Figure.Rook)
-							- ReadyPlayer1.getValue(Figure.Bishop)),
+			assertEquals(-1 * ReadyPlayer1.getValue(Figure.Pawn),
 					whitePlayer1.evaluateThreatsAndProtections(boardPosition));
-			assertEquals(
-					ReadyPlayer1.getValue(Figure.Pawn) + ReadyPlayer1.getValue(Figure.Rook)
-							- ReadyPlayer1.getValue(Figure.Bishop),
-					blackPlayer1.evaluateThreatsAndProtections(boardPosition));
+			assertEquals(ReadyPlayer1.getValue(Figure.Pawn), blackPlayer1.evaluateThreatsAndProtections(boardPosition));
 		}
 
 		{
 
-			// the white pawn is protected by two pieces and threatened by three pieces
-			// in addition, the second white pawn is threatened by the second black knight
+			// the white pawn is protected by two pieces and threatened by three pieces,
+			// so only the pawn is lost; in addition, the second white pawn is threatened
+			// by the second black knight
 			BoardPosition boardPosition = BoardPosition
 					.createPosition(
 							Arrays.asList(new PositionedPiece(Coordinate.e1, new Piece(Colour.Black, Figure.Bishop)),
@@ -317,19 +333,18 @@ public class ReadyPlayer1Test implements Player.OutputWriter {
 									new PositionedPiece(Coordinate.b6, new Piece(Colour.Black, Figure.Knight))),
 							Colour.White);
 			assertEquals(
-					-1 * (ReadyPlayer1.getValue(Figure.Pawn) + ReadyPlayer1.getValue(Figure.Rook)
-							- ReadyPlayer1.getValue(Figure.Bishop) + ReadyPlayer1.getValue(Figure.Pawn)),
+					-1 * (ReadyPlayer1.getValue(Figure.Pawn) + ReadyPlayer1.getValue(Figure.Pawn)),
 					whitePlayer1.evaluateThreatsAndProtections(boardPosition));
 			assertEquals(
-					ReadyPlayer1.getValue(Figure.Pawn) + ReadyPlayer1.getValue(Figure.Rook)
-							- ReadyPlayer1.getValue(Figure.Bishop) + ReadyPlayer1.getValue(Figure.Pawn),
+					ReadyPlayer1.getValue(Figure.Pawn) + ReadyPlayer1.getValue(Figure.Pawn),
 					blackPlayer1.evaluateThreatsAndProtections(boardPosition));
 		}
 
 		{
 
-			// the white pawn is protected by two pieces and threatened by three pieces
-			// in addition, the black pawn is threatened by the second white knight
+			// the white pawn is protected by two pieces and threatened by three pieces,
+			// so only the pawn is lost; in addition, the black pawn is threatened by the
+			// second white knight
 			BoardPosition boardPosition = BoardPosition
 					.createPosition(
 							Arrays.asList(new PositionedPiece(Coordinate.e1, new Piece(Colour.Black, Figure.Bishop)),
@@ -342,12 +357,10 @@ public class ReadyPlayer1Test implements Player.OutputWriter {
 									new PositionedPiece(Coordinate.b6, new Piece(Colour.White, Figure.Knight))),
 							Colour.White);
 			assertEquals(
-					-1 * (ReadyPlayer1.getValue(Figure.Pawn) + ReadyPlayer1.getValue(Figure.Rook)
-							- ReadyPlayer1.getValue(Figure.Bishop) - ReadyPlayer1.getValue(Figure.Pawn)),
+					-1 * (ReadyPlayer1.getValue(Figure.Pawn) - ReadyPlayer1.getValue(Figure.Pawn)),
 					whitePlayer1.evaluateThreatsAndProtections(boardPosition));
 			assertEquals(
-					ReadyPlayer1.getValue(Figure.Pawn) + ReadyPlayer1.getValue(Figure.Rook)
-							- ReadyPlayer1.getValue(Figure.Bishop) - ReadyPlayer1.getValue(Figure.Pawn),
+					ReadyPlayer1.getValue(Figure.Pawn) - ReadyPlayer1.getValue(Figure.Pawn),
 					blackPlayer1.evaluateThreatsAndProtections(boardPosition));
 		}
 	}
@@ -459,7 +472,7 @@ public class ReadyPlayer1Test implements Player.OutputWriter {
 
 		player.setDebug();
 		Params params = new Params();
-		params.maxDepthInPlies = 4;
+		params.maxDepthInPlies = 6;
 		Move move = player.makeMove(boardPosition, params);
 		System.out.println(move);
 		player.printEvaluatedChoices(System.out);
@@ -0,0 +1,110 @@
+package de.thohee.useless.chess.player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.thohee.useless.chess.board.Colour;
+import de.thohee.useless.chess.board.Coordinate;
+import de.thohee.useless.chess.board.Figure;
+import de.thohee.useless.chess.board.Move.Capture;
+import de.thohee.useless.chess.board.PackedMove;
+import de.thohee.useless.chess.player.TranspositionTable.Bound;
+import de.thohee.useless.chess.player.TranspositionTable.Probe;
+
+public class TranspositionTableTest {
+
+	// keys, which only differ in the verification bits, share the same bucket
+	private static final long key1 = 5L;
+	private static final long key2 = 5L | (1L << 50);
+	private static final long key3 = 5L | (2L << 50);
+
+	private static ValueVector createValue(int value) {
+		ValueVector valueVector = new ValueVector();
+		valueVector.add(value);
+		return valueVector;
+	}
+
+	@Test
+	public void testPutAndFind() {
+		TranspositionTable transpositionTable = new TranspositionTable(1);
+		Probe probe = new Probe();
+		assertEquals(1 << 16, transpositionTable.getCapacity());
+		assertFalse(transpositionTable.find(key1, probe));
+
+		final int move = PackedMove.of(Colour.White, Figure.Knight, Coordinate.g1.ordinal(), Coordinate.f3.ordinal(),
+				Capture.None);
+		Value value = createValue(42);
+		transpositionTable.put(key1, 5, Bound.Lower, value, move);
+		assertTrue(transpositionTable.find(key1, probe));
+		assertSame(value, probe.getValue());
+		assertEquals(5, probe.getDepth());
+		assertEquals(Bound.Lower, probe.getBound());
+		assertEquals(move, probe.getBestMove());
+		assertFalse(transpositionTable.find(key2, probe));
+
+		// the best move is kept if the new entry has none
+		transpositionTable.put(key1, 3, Bound.Upper, value, PackedMove.NONE);
+		assertTrue(transpositionTable.find(key1, probe));
+		assertEquals(3, probe.getDepth());
+		assertEquals(Bound.Upper, probe.getBound());
+		assertEquals(move, probe.getBestMove());
+
+		transpositionTable.clear();
+		assertFalse(transpositionTable.find(key1, probe));
+	}
+
+	@Test
+	public void testReplacement() {
+		TranspositionTable transpositionTable = new TranspositionTable(1);
+		Probe probe = new Probe();
+		transpositionTable.put(key1, 6, Bound.Exact, createValue(1), PackedMove.NONE);
+		transpositionTable.put(key2, 2, Bound.Exact, createValue(2), PackedMove.NONE);
+		// the shallower entry is replaced
+		transpositionTable.put(key3, 4, Bound.Exact, createValue(3), PackedMove.NONE);
+		assertTrue(transpositionTable.find(key1, probe));
+		assertFalse(transpositionTable.find(key2, probe));
+		assertTrue(transpositionTable.find(key3, probe));
+
+		// entries of a previous search are replaced first, even if deeper
+		transpositionTable.newSearch();
+		transpositionTable.put(key2, 1, Bound.Exact, createValue(2), PackedMove.NONE);
+		assertTrue(transpositionTable.find(key2, probe));
+		assertFalse(transpositionTable.find(key3, probe));
+		transpositionTable.put(key3, 1, Bound.Exact, createValue(3), PackedMove.NONE);
+		assertFalse(transpositionTable.find(key1, probe));
+		assertTrue(transpositionTable.find(key2, probe));
+		assertTrue(transpositionTable.find(key3, probe));
+	}
+
+	@Test
+	public void testAging() {
+		TranspositionTable transpositionTable = new TranspositionTable(1);
+		Probe probe = new Probe();
+		transpositionTable.put(key1, 7, Bound.Exact, createValue(1), PackedMove.NONE);
+		transpositionTable.newSearch();
+		transpositionTable.put(key2, 6, Bound.Exact, createValue(2), PackedMove.NONE);
+		transpositionTable.newSearch();
+		// the entries survive new searches
+		assertTrue(transpositionTable.find(key1, probe));
+		assertTrue(transpositionTable.find(key2, probe));
+		// the older entry is replaced first, although it is deeper
+		transpositionTable.put(key3, 1, Bound.Exact, createValue(3), PackedMove.NONE);
+		assertFalse(transpositionTable.find(key1, probe));
+		assertTrue(transpositionTable.find(key2, probe));
+	}
+
+	@Test
+	public void testMaxDepth() {
+		TranspositionTable transpositionTable = new TranspositionTable(1);
+		Probe probe = new Probe();
+		transpositionTable.put(key1, TranspositionTable.MAX_DEPTH + 1, Bound.Exact, createValue(1), PackedMove.NONE);
+		assertTrue(transpositionTable.find(key1, probe));
+		// a greater depth is stored as the greatest one instead of overflowing
+		assertEquals(TranspositionTable.MAX_DEPTH, probe.getDepth());
+	}
+
+}
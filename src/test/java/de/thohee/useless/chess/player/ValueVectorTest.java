@@ -2,6 +2,7 @@ package de.thohee.useless.chess.player;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -139,4 +140,50 @@ public class ValueVectorTest {
 		assertEquals(-1, vectorMaxMax3.compareTo(ValueVector.createMax()));
 	}
 
+	private static ValueVector createVector(int... values) {
+		ValueVector valueVector = new ValueVector();
+		for (int value : values) {
+			valueVector.add(value);
+		}
+		return valueVector;
+	}
+
+	@Test
+	public void testNegate() {
+		assertTrue(ValueVector.createMin().negate().isMax());
+		assertTrue(ValueVector.createMax().negate().isMin());
+		assertTrue(ValueVector.createInvalid().negate().isInvalid());
+
+		ValueVector[] ordered = { createVector(Integer.MIN_VALUE, 0), createVector(Integer.MIN_VALUE + 1, 5),
+				createVector(-1, Integer.MAX_VALUE), createVector(0, 0), createVector(0, 1),
+				createVector(Integer.MAX_VALUE, 0) };
+		for (int i = 0; i < ordered.length; ++i) {
+			assertEquals(0, ordered[i].negate().negate().compareTo(ordered[i]));
+			for (int j = i + 1; j < ordered.length; ++j) {
+				assertEquals(1, ordered[i].negate().compareTo(ordered[j].negate()));
+			}
+		}
+	}
+
+	@Test
+	public void testNext() {
+		assertEquals(createVector(1, 3), createVector(1, 2).next());
+		assertEquals(createVector(2, Integer.MIN_VALUE), createVector(1, Integer.MAX_VALUE).next());
+		assertEquals(0,
+				createVector(Integer.MAX_VALUE, Integer.MAX_VALUE - 1).next().compareTo(ValueVector.createMax()));
+		ValueVector value = createVector(-3, 7);
+		assertEquals(1, value.next().compareTo(value));
+	}
+
+	@Test
+	public void testOffset() {
+		ValueVector value = createVector(0, 3, 7);
+		assertEquals(createVector(0, 1, Integer.MIN_VALUE), value.offset(1, -2));
+		assertEquals(createVector(0, 5, Integer.MAX_VALUE), value.offset(1, 2));
+		assertEquals(1, value.compareTo(value.offset(1, -1)));
+		assertEquals(-1, value.compareTo(value.offset(1, 1)));
+		assertEquals(createVector(0, Integer.MAX_VALUE, Integer.MAX_VALUE),
+				createVector(0, Integer.MAX_VALUE - 1, 0).offset(1, 2));
+	}
+
 }